@@ -0,0 +1,197 @@
+package gemenielabs.vocabulary;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.Debug;
+import android.os.StrictMode;
+import android.util.Log;
+import android.view.View;
+import android.widget.Button;
+
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import builder.gemenielabs.vocabulary.R;
+
+import static androidx.test.espresso.Espresso.onView;
+import static androidx.test.espresso.Espresso.openActionBarOverflowOrOptionsMenu;
+import static androidx.test.espresso.action.ViewActions.click;
+import static androidx.test.espresso.action.ViewActions.closeSoftKeyboard;
+import static androidx.test.espresso.action.ViewActions.replaceText;
+import static androidx.test.espresso.matcher.ViewMatchers.withId;
+import static androidx.test.espresso.matcher.ViewMatchers.withText;
+import static org.junit.Assert.*;
+
+/**
+ * Plays a whole list on a device with StrictMode watching the main thread for disk reads and
+ * writes, and measures what answering a question allocates.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QuizLoopStrictModeTest {
+
+    private static final String TAG = "trouble";
+
+    // Median bytes one answer may allocate. Provisional until calibrated on a reference
+    // device: run with -Pandroid.testInstrumentationRunnerArguments.calibrateAllocations=true,
+    // take the median from the "answeringStaysWithinAllocationBudget" log line and set this to
+    // it plus a quarter
+    private static final long MAX_BYTES_PER_ANSWER = 32 * 1024;
+
+    // Two question types per word plus borrowed words, with room to spare
+    private static final int MAX_QUESTIONS = 200;
+
+    private static final int[] ANSWER_BUTTONS = {
+            R.id.definition_answer_button_1,
+            R.id.definition_answer_button_2,
+            R.id.definition_answer_button_3,
+            R.id.definition_answer_button_4};
+
+    private final List<Throwable> violations = new CopyOnWriteArrayList<>();
+    private ActivityScenario<MainActivity> scenario;
+    private StrictMode.ThreadPolicy oldPolicy;
+
+    @Before
+    public void setUp() {
+        // Start from an untouched List A, and load the preferences here rather than on the main thread
+        Context context = ApplicationProvider.getApplicationContext();
+        SharedPreferences sharedPreferences = context.getSharedPreferences(MainActivity.PREFS_NAME, Context.MODE_PRIVATE);
+        sharedPreferences.edit().clear().commit();
+        sharedPreferences.getAll();
+        // Otherwise the screen would restore an earlier run's progress from its snapshot
+        File[] snapshots = context.getFilesDir().listFiles((dir, name) -> name.startsWith("progress_snapshot"));
+        for (File snapshot : snapshots != null ? snapshots : new File[0]) {
+            snapshot.delete();
+        }
+
+        scenario = ActivityScenario.launch(MainActivity.class);
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+    }
+
+    @After
+    public void tearDown() {
+        if (oldPolicy != null) {
+            scenario.onActivity(activity -> StrictMode.setThreadPolicy(oldPolicy));
+        }
+        scenario.close();
+    }
+
+    private void watchMainThread() {
+        StrictMode.ThreadPolicy.Builder builder = new StrictMode.ThreadPolicy.Builder()
+                .detectDiskReads()
+                .detectDiskWrites();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            builder.penaltyListener(Runnable::run, violations::add);
+        } else {
+            builder.penaltyLog().penaltyDeath();
+        }
+        scenario.onActivity(activity -> {
+            oldPolicy = StrictMode.getThreadPolicy();
+            StrictMode.setThreadPolicy(builder.build());
+        });
+    }
+
+    @Test
+    public void fullQuizDoesNoDiskIoOnMainThread() {
+        watchMainThread();
+
+        openActionBarOverflowOrOptionsMenu(ApplicationProvider.getApplicationContext());
+        onView(withText("List A")).perform(click());
+        onView(withId(R.id.basic_button)).perform(click());
+
+        int questions = 0;
+        while (!isComplete()) {
+            assertTrue("Quiz did not finish", questions++ < MAX_QUESTIONS);
+            onView(withId(R.id.next_question_button)).perform(click());
+
+            boolean[] definition = new boolean[1];
+            int[] button = new int[1];
+            String[] word = new String[1];
+            scenario.onActivity(activity -> {
+                definition[0] = activity.gridLayout.getVisibility() == View.VISIBLE;
+                button[0] = activity.randomButton;
+                word[0] = correctWord(activity);
+            });
+
+            if (definition[0]) {
+                onView(withId(ANSWER_BUTTONS[button[0]])).perform(click());
+            } else {
+                onView(withId(R.id.fill_in_the_blank_edit_text)).perform(replaceText(word[0]), closeSoftKeyboard());
+                onView(withId(R.id.fill_in_the_blank_button)).perform(click());
+            }
+        }
+
+        assertTrue("Disk I/O on the main thread: " + violations, violations.isEmpty());
+    }
+
+    @Test
+    public void answeringStaysWithinAllocationBudget() {
+        scenario.onActivity(activity -> activity.basic.performClick());
+
+        long[] perAnswer = new long[MAX_QUESTIONS];
+        int answers = 0;
+        while (!isComplete()) {
+            assertTrue("Quiz did not finish", answers < MAX_QUESTIONS);
+            // Let layout and messages from the previous answer settle so they are not counted
+            InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+            long[] allocated = new long[1];
+            scenario.onActivity(activity -> {
+                activity.nextQuestionButton.performClick();
+                Button answerButton;
+                if (activity.gridLayout.getVisibility() == View.VISIBLE) {
+                    answerButton = activity.findViewById(ANSWER_BUTTONS[activity.randomButton]);
+                } else {
+                    activity.fillInTheBlankEditText.setText(correctWord(activity));
+                    answerButton = activity.fillInTheBlankButton;
+                }
+                long before = bytesAllocated();
+                answerButton.performClick();
+                allocated[0] = bytesAllocated() - before;
+            });
+            perAnswer[answers++] = allocated[0];
+        }
+
+        // The counter covers the whole process, so the median keeps stray background work out
+        long[] measured = Arrays.copyOf(perAnswer, answers);
+        Arrays.sort(measured);
+        long median = measured[answers / 2];
+        Log.i(TAG, "answeringStaysWithinAllocationBudget: " + answers + " answers, median " + median
+                + " bytes, max " + measured[answers - 1]);
+        if (Boolean.parseBoolean(InstrumentationRegistry.getArguments().getString("calibrateAllocations"))) {
+            return;
+        }
+        assertTrue("Median bytes per answer " + median + " over budget " + MAX_BYTES_PER_ANSWER,
+                median <= MAX_BYTES_PER_ANSWER);
+    }
+
+    /**
+     * Bytes the runtime has allocated since the process started.
+     */
+    private static long bytesAllocated() {
+        return Long.parseLong(Debug.getRuntimeStat("art.gc.bytes-allocated"));
+    }
+
+    private boolean isComplete() {
+        boolean[] complete = new boolean[1];
+        scenario.onActivity(activity -> complete[0] = activity.session != null && activity.session.isComplete());
+        return complete[0];
+    }
+
+    private static String correctWord(MainActivity activity) {
+        return activity.borrowedIndex >= 0
+                ? activity.borrowedEntry.words[activity.borrowedIndex]
+                : MainActivity.vocabWordList[activity.wordIndex];
+    }
+}
@@ -0,0 +1,151 @@
+package gemenielabs.vocabulary;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tracks rolling accuracy and response time per word and per level with exponential moving
+ * averages, so each answer costs O(1), and decides when the learner should see words from a
+ * harder or easier level. Plain Java with no Android dependencies so it can be unit tested.
+ *
+ * Levels are indexes into sub_list_array, easiest first.
+ */
+public class AdaptiveDifficultyEngine {
+
+    public enum Decision {
+        STAY,
+        PROMOTE,
+        DEMOTE
+    }
+
+    /**
+     * Thresholds and smoothing for the engine.
+     */
+    public static class Config {
+        /** Weight of the newest answer in every moving average. */
+        public double smoothing = 0.2;
+        /** Level accuracy at or above which harder words are pulled in. */
+        public double promoteAccuracy = 0.85;
+        /** Level accuracy at or below which easier words are pulled in. */
+        public double demoteAccuracy = 0.5;
+        /** Promotion also needs the average answer to be at least this fast. */
+        public long promoteMaxResponseMillis = 10000;
+        /** Answers needed at a level, and between two decisions, before deciding. */
+        public int minAnswers = 5;
+    }
+
+    static class Stats {
+        double accuracy;
+        double responseMillis;
+        int answers;
+
+        void add(boolean correct, long millis, double smoothing) {
+            double hit = correct ? 1 : 0;
+            if (answers == 0) {
+                accuracy = hit;
+                responseMillis = millis;
+            } else {
+                accuracy += smoothing * (hit - accuracy);
+                responseMillis += smoothing * (millis - responseMillis);
+            }
+            answers++;
+        }
+    }
+
+    private final Config config;
+    private final Stats[] levelStats;
+    private final int[] answersSinceDecision;
+    private final Map<String, Stats> wordStats = new HashMap<>();
+
+    public AdaptiveDifficultyEngine(int levelCount, Config config) {
+        this.config = config;
+        levelStats = new Stats[levelCount];
+        answersSinceDecision = new int[levelCount];
+        for (int i = 0; i < levelCount; i++) {
+            levelStats[i] = new Stats();
+        }
+    }
+
+    /**
+     * Record one answer and return whether the learner is ready for a neighbouring level.
+     */
+    public Decision recordAnswer(int level, String word, boolean correct, long responseMillis) {
+        Stats stats = wordStats.get(word);
+        if (stats == null) {
+            stats = new Stats();
+            wordStats.put(word, stats);
+        }
+        stats.add(correct, responseMillis, config.smoothing);
+
+        Stats current = levelStats[level];
+        current.add(correct, responseMillis, config.smoothing);
+        if (++answersSinceDecision[level] < config.minAnswers) {
+            return Decision.STAY;
+        }
+
+        Decision decision = Decision.STAY;
+        if (current.accuracy >= config.promoteAccuracy
+                && current.responseMillis <= config.promoteMaxResponseMillis
+                && level + 1 < levelStats.length) {
+            decision = Decision.PROMOTE;
+        } else if (current.accuracy <= config.demoteAccuracy && level > 0) {
+            decision = Decision.DEMOTE;
+        }
+        if (decision != Decision.STAY) {
+            answersSinceDecision[level] = 0;
+        }
+        return decision;
+    }
+
+    /**
+     * The level a decision points to.
+     */
+    public static int targetLevel(int level, Decision decision) {
+        if (decision == Decision.PROMOTE) {
+            return level + 1;
+        } else if (decision == Decision.DEMOTE) {
+            return level - 1;
+        }
+        return level;
+    }
+
+    /**
+     * Pick up to count indexes from a level's words, weakest first. Words never answered count
+     * as half known, so a harder level offers its new words before ones already answered well.
+     */
+    public int[] selectWords(String[] words, int count) {
+        int[] picked = new int[Math.min(count, words.length)];
+        boolean[] used = new boolean[words.length];
+        for (int p = 0; p < picked.length; p++) {
+            int best = -1;
+            double bestAccuracy = Double.MAX_VALUE;
+            for (int i = 0; i < words.length; i++) {
+                double accuracy = wordAccuracy(words[i]);
+                if (!used[i] && accuracy < bestAccuracy) {
+                    best = i;
+                    bestAccuracy = accuracy;
+                }
+            }
+            used[best] = true;
+            picked[p] = best;
+        }
+        return picked;
+    }
+
+    public double wordAccuracy(String word) {
+        Stats stats = wordStats.get(word);
+        return stats == null ? 0.5 : stats.accuracy;
+    }
+
+    public double levelAccuracy(int level) {
+        return levelStats[level].accuracy;
+    }
+
+    public double levelResponseMillis(int level) {
+        return levelStats[level].responseMillis;
+    }
+
+    public int levelAnswers(int level) {
+        return levelStats[level].answers;
+    }
+}
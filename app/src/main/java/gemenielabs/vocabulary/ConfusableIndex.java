@@ -0,0 +1,361 @@
+package gemenielabs.vocabulary;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * For every word of a list, the few other words in it that are easiest to mix up: similar
+ * spelling by character trigrams and edit distance, or definitions that share content words.
+ *
+ * Candidates come from a trigram and definition token inverted index rather than comparing
+ * every pair, and only the few dozen sharing the most features with a word are scored, so
+ * building grows linearly with the list. The result is k neighbours per word in a flat int
+ * array with a byte score each, and looking up a word is O(k). Imported lists build it once
+ * at import and store each word's row next to the word; see {@link #encode(int)}.
+ * Building allocates, so do it off the main thread; queries do not.
+ */
+public class ConfusableIndex {
+
+    public static final int DEFAULT_NEIGHBOURS = 3;
+
+    // Below this combined score (0-100) two words are not worth reviewing together
+    private static final int MIN_SCORE = 20;
+
+    // Trigrams or tokens shared by more words than this say nothing about any pair
+    private static final int MAX_POSTINGS = 200;
+
+    // Most candidates scored per word, those sharing the most trigrams and tokens with it
+    private static final int MAX_CANDIDATES = 64;
+
+    private static final int ROW_BYTES_PER_NEIGHBOUR = 5;
+
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+            "the", "and", "for", "with", "that", "from", "one", "something", "someone", "are",
+            "not", "into", "has", "have", "who", "which", "its", "being", "way", "typically",
+            "especially", "very", "make", "made", "person", "thing", "state", "quality"));
+
+    private final int neighbours;
+    private final int[] neighbourIndexes;
+    private final byte[] scores;
+
+    private ConfusableIndex(int neighbours, int[] neighbourIndexes, byte[] scores) {
+        this.neighbours = neighbours;
+        this.neighbourIndexes = neighbourIndexes;
+        this.scores = scores;
+    }
+
+    /**
+     * Index of the word at position word's neighbour number rank, or -1 past the last one or
+     * for a word the index was not built with.
+     */
+    public int neighbour(int word, int rank) {
+        int slot = word * neighbours + rank;
+        return rank < neighbours && slot < neighbourIndexes.length ? neighbourIndexes[slot] : -1;
+    }
+
+    /**
+     * Similarity from 0 to 100 of the word and its neighbour number rank.
+     */
+    public int score(int word, int rank) {
+        return scores[word * neighbours + rank];
+    }
+
+    public int neighbours() {
+        return neighbours;
+    }
+
+    /**
+     * Number of words the index was built with.
+     */
+    public int size() {
+        return neighbours == 0 ? 0 : neighbourIndexes.length / neighbours;
+    }
+
+    /**
+     * Neighbours of one word as stored next to it: a big endian index and a score per rank.
+     */
+    public byte[] encode(int word) {
+        byte[] row = new byte[neighbours * ROW_BYTES_PER_NEIGHBOUR];
+        for (int rank = 0; rank < neighbours; rank++) {
+            int index = neighbourIndexes[word * neighbours + rank];
+            int offset = rank * ROW_BYTES_PER_NEIGHBOUR;
+            row[offset] = (byte) (index >>> 24);
+            row[offset + 1] = (byte) (index >>> 16);
+            row[offset + 2] = (byte) (index >>> 8);
+            row[offset + 3] = (byte) index;
+            row[offset + 4] = scores[word * neighbours + rank];
+        }
+        return row;
+    }
+
+    /**
+     * Rebuild an index from the rows {@link #encode(int)} made, or return null if a row is
+     * missing or was written with a different number of neighbours.
+     */
+    public static ConfusableIndex decode(byte[][] rows, int neighbours) {
+        int[] neighbourIndexes = new int[rows.length * neighbours];
+        byte[] scores = new byte[rows.length * neighbours];
+        for (int word = 0; word < rows.length; word++) {
+            byte[] row = rows[word];
+            if (row == null || row.length != neighbours * ROW_BYTES_PER_NEIGHBOUR) {
+                return null;
+            }
+            for (int rank = 0; rank < neighbours; rank++) {
+                int offset = rank * ROW_BYTES_PER_NEIGHBOUR;
+                int index = (row[offset] & 0xff) << 24 | (row[offset + 1] & 0xff) << 16
+                        | (row[offset + 2] & 0xff) << 8 | (row[offset + 3] & 0xff);
+                if (index < -1 || index >= rows.length) {
+                    return null;
+                }
+                neighbourIndexes[word * neighbours + rank] = index;
+                scores[word * neighbours + rank] = row[offset + 4];
+            }
+        }
+        return new ConfusableIndex(neighbours, neighbourIndexes, scores);
+    }
+
+    public static ConfusableIndex build(String[] words, String[] definitions, int neighbours) {
+        int count = words.length;
+        String[] lowerWords = new String[count];
+        // Trigrams and definition tokens become sorted feature ids so pairs compare by merging
+        int[][] trigramIds = new int[count][];
+        int[][] tokenIds = new int[count][];
+        Map<String, Integer> featureIds = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            lowerWords[i] = words[i].toLowerCase(Locale.US);
+            trigramIds[i] = featureIds(featureIds, trigrams(lowerWords[i]), "#");
+            tokenIds[i] = featureIds(featureIds, tokens(definitions[i]), "");
+        }
+        int[][] postings = postings(featureIds.size(), trigramIds, tokenIds);
+
+        int[] neighbourIndexes = new int[count * neighbours];
+        byte[] scores = new byte[count * neighbours];
+        Arrays.fill(neighbourIndexes, -1);
+        // Features each candidate shares with the word, and which candidates were touched
+        int[] hits = new int[count];
+        int[] touched = new int[count];
+        int[] editRows = new int[2 * (longest(lowerWords) + 1)];
+
+        for (int i = 0; i < count; i++) {
+            int touchedCount = collect(postings, trigramIds[i], i, hits, touched, 0);
+            touchedCount = collect(postings, tokenIds[i], i, hits, touched, touchedCount);
+
+            // Only the candidates sharing the most features are scored, at most MAX_CANDIDATES
+            int threshold = threshold(hits, touched, touchedCount, trigramIds[i].length + tokenIds[i].length);
+            int budget = MAX_CANDIDATES;
+            for (int pass = 0; pass < 2; pass++) {
+                for (int t = 0; t < touchedCount && budget > 0; t++) {
+                    int candidate = touched[t];
+                    if (pass == 0 ? hits[candidate] > threshold : hits[candidate] == threshold) {
+                        budget--;
+                        int score = score(lowerWords[i], lowerWords[candidate], trigramIds[i], trigramIds[candidate],
+                                tokenIds[i], tokenIds[candidate], editRows);
+                        insert(neighbourIndexes, scores, i * neighbours, neighbours, candidate, score);
+                    }
+                }
+            }
+            for (int t = 0; t < touchedCount; t++) {
+                hits[touched[t]] = 0;
+            }
+        }
+        return new ConfusableIndex(neighbours, neighbourIndexes, scores);
+    }
+
+    private static int[] featureIds(Map<String, Integer> featureIds, Set<String> features, String prefix) {
+        int[] ids = new int[features.size()];
+        int next = 0;
+        for (String feature : features) {
+            String key = prefix + feature;
+            Integer id = featureIds.get(key);
+            if (id == null) {
+                id = featureIds.size();
+                featureIds.put(key, id);
+            }
+            ids[next++] = id;
+        }
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * The words having each feature, or null for features too common to tell words apart.
+     */
+    private static int[][] postings(int features, int[][] trigramIds, int[][] tokenIds) {
+        int[] sizes = new int[features];
+        for (int i = 0; i < trigramIds.length; i++) {
+            for (int id : trigramIds[i]) {
+                sizes[id]++;
+            }
+            for (int id : tokenIds[i]) {
+                sizes[id]++;
+            }
+        }
+        int[][] postings = new int[features][];
+        for (int id = 0; id < features; id++) {
+            if (sizes[id] <= MAX_POSTINGS) {
+                postings[id] = new int[sizes[id]];
+            }
+            sizes[id] = 0;
+        }
+        for (int i = 0; i < trigramIds.length; i++) {
+            for (int id : trigramIds[i]) {
+                if (postings[id] != null) {
+                    postings[id][sizes[id]++] = i;
+                }
+            }
+            for (int id : tokenIds[i]) {
+                if (postings[id] != null) {
+                    postings[id][sizes[id]++] = i;
+                }
+            }
+        }
+        return postings;
+    }
+
+    private static int collect(int[][] postings, int[] ids, int word, int[] hits, int[] touched, int touchedCount) {
+        for (int id : ids) {
+            if (postings[id] == null) {
+                continue;
+            }
+            for (int candidate : postings[id]) {
+                if (candidate != word && hits[candidate]++ == 0) {
+                    touched[touchedCount++] = candidate;
+                }
+            }
+        }
+        return touchedCount;
+    }
+
+    /**
+     * Fewest shared features a candidate needs to be among the MAX_CANDIDATES sharing most.
+     */
+    private static int threshold(int[] hits, int[] touched, int touchedCount, int maxHits) {
+        if (touchedCount <= MAX_CANDIDATES) {
+            return 1;
+        }
+        int[] histogram = new int[maxHits + 1];
+        for (int t = 0; t < touchedCount; t++) {
+            histogram[hits[touched[t]]]++;
+        }
+        int atLeast = 0;
+        for (int h = maxHits; h > 1; h--) {
+            atLeast += histogram[h];
+            if (atLeast >= MAX_CANDIDATES) {
+                return h;
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Put a candidate into a word's neighbour slots, which are kept sorted by score.
+     */
+    private static void insert(int[] neighbourIndexes, byte[] scores, int base, int neighbours, int candidate, int score) {
+        if (score < MIN_SCORE) {
+            return;
+        }
+        for (int rank = 0; rank < neighbours; rank++) {
+            if (neighbourIndexes[base + rank] == -1 || score > scores[base + rank]) {
+                System.arraycopy(neighbourIndexes, base + rank, neighbourIndexes, base + rank + 1, neighbours - rank - 1);
+                System.arraycopy(scores, base + rank, scores, base + rank + 1, neighbours - rank - 1);
+                neighbourIndexes[base + rank] = candidate;
+                scores[base + rank] = (byte) score;
+                return;
+            }
+        }
+    }
+
+    private static int longest(String[] words) {
+        int longest = 0;
+        for (String word : words) {
+            longest = Math.max(longest, word.length());
+        }
+        return longest;
+    }
+
+    /**
+     * Combined similarity from 0 to 100: trigram overlap and edit distance of the spelling,
+     * and content word overlap of the definitions.
+     */
+    static int score(String a, String b, int[] trigramsA, int[] trigramsB, int[] tokensA, int[] tokensB,
+                     int[] editRows) {
+        int sharedTrigrams = shared(trigramsA, trigramsB);
+        double spelling = (double) sharedTrigrams / (trigramsA.length + trigramsB.length - sharedTrigrams);
+        double edit = 1 - (double) editDistance(a, b, editRows) / Math.max(a.length(), b.length());
+        // Definitions are a handful of words, so one shared content word already means a lot
+        double meaning = tokensA.length == 0 || tokensB.length == 0
+                ? 0
+                : (double) shared(tokensA, tokensB) / Math.min(tokensA.length, tokensB.length);
+        return (int) Math.round(100 * (0.3 * spelling + 0.3 * edit + 0.4 * meaning));
+    }
+
+    /**
+     * Number of ids two sorted arrays have in common.
+     */
+    private static int shared(int[] a, int[] b) {
+        int shared = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] == b[j]) {
+                shared++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return shared;
+    }
+
+    static int editDistance(String a, String b) {
+        return editDistance(a, b, new int[2 * (b.length() + 1)]);
+    }
+
+    /**
+     * Levenshtein distance using rows, which holds two rows of at least b's length plus one.
+     */
+    private static int editDistance(String a, String b, int[] rows) {
+        int width = b.length() + 1;
+        int previous = 0;
+        int current = width;
+        for (int j = 0; j <= b.length(); j++) {
+            rows[previous + j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            rows[current] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                rows[current + j] = Math.min(Math.min(rows[current + j - 1] + 1, rows[previous + j] + 1),
+                        rows[previous + j - 1] + cost);
+            }
+            int swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return rows[previous + b.length()];
+    }
+
+    static Set<String> trigrams(String word) {
+        String padded = "^" + word + "$";
+        Set<String> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+
+    static Set<String> tokens(String definition) {
+        Set<String> tokens = new HashSet<>();
+        for (String token : definition.toLowerCase(Locale.US).split("[^a-z]+")) {
+            if (token.length() > 2 && !STOP_WORDS.contains(token)) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
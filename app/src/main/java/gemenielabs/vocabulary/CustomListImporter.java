@@ -0,0 +1,294 @@
+package gemenielabs.vocabulary;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Streams a CSV or JSON word list into the {@link CustomListStore} one entry at a time.
+ *
+ * CSV rows are word, definition, sentence and an optional level, with an optional header row.
+ * JSON is a top level array of objects with the same fields. Entries missing a field, or whose
+ * sentence has neither a blank nor the word to blank out, are skipped, as are repeats of a
+ * word already in the same level. Entries without a recognised level go to the first level.
+ * Once the file is read, each level's {@link ConfusableIndex} is built and stored, which holds
+ * one level in memory at a time.
+ */
+public class CustomListImporter {
+
+    private static final String TAG = "trouble";
+    private static final int BATCH_SIZE = 500;
+    private static final int PROGRESS_INTERVAL = 1000;
+    private static final String BLANK = "_____";
+
+    public interface ProgressListener {
+        /**
+         * Called every thousand entries with the bytes read so far; totalBytes is -1 if unknown.
+         */
+        void onProgress(int imported, long bytesRead, long totalBytes);
+    }
+
+    public static class Result {
+        public final String listName;
+        public final int imported;
+        public final int skipped;
+        public final boolean cancelled;
+
+        Result(String listName, int imported, int skipped, boolean cancelled) {
+            this.listName = listName;
+            this.imported = imported;
+            this.skipped = skipped;
+            this.cancelled = cancelled;
+        }
+    }
+
+    private final CustomListStore store;
+    private final String[] levels;
+    private final List<String> reservedNames;
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private int imported;
+    private int skipped;
+
+    /**
+     * @param reservedNames names an import may not take, such as the built in lists
+     */
+    public CustomListImporter(CustomListStore store, String[] levels, String[] reservedNames) {
+        this.store = store;
+        this.levels = levels;
+        this.reservedNames = Arrays.asList(reservedNames);
+    }
+
+    /**
+     * Ask a running import to stop; everything it wrote is removed.
+     */
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    /**
+     * Import the stream under listName, or a numbered variant if that name is taken.
+     * Runs on the calling thread, so call it off the main thread.
+     */
+    public Result importList(InputStream input, boolean json, String listName, long totalBytes,
+                             ProgressListener listener) throws IOException {
+        String name = listName;
+        for (int i = 2; reservedNames.contains(name) || store.hasList(name); i++) {
+            name = listName + " (" + i + ")";
+        }
+
+        CountingInputStream counter = new CountingInputStream(input);
+        Reader reader = new BufferedReader(new InputStreamReader(counter, StandardCharsets.UTF_8));
+        CustomListStore.Writer writer = store.openWriter(name, BATCH_SIZE);
+        imported = 0;
+        skipped = 0;
+        try {
+            if (json) {
+                readJson(reader, writer, counter, totalBytes, listener);
+            } else {
+                readCsv(reader, writer, counter, totalBytes, listener);
+            }
+        } catch (IOException | RuntimeException e) {
+            writer.abort();
+            throw e;
+        }
+
+        try {
+            // Index each level once now rather than every time it is played
+            writer.flush();
+            for (String level : writer.levels()) {
+                if (cancelled.get()) {
+                    break;
+                }
+                store.buildConfusables(name, level);
+            }
+        } catch (RuntimeException e) {
+            writer.abort();
+            throw e;
+        }
+
+        if (cancelled.get()) {
+            writer.abort();
+            return new Result(name, imported, skipped, true);
+        }
+        writer.finish();
+        Log.i(TAG, "importList: " + name + " imported " + imported + " skipped " + skipped);
+        return new Result(name, imported, skipped, false);
+    }
+
+    private void readCsv(Reader reader, CustomListStore.Writer writer, CountingInputStream counter,
+                         long totalBytes, ProgressListener listener) throws IOException {
+        ArrayList<String> fields = new ArrayList<>(4);
+        StringBuilder field = new StringBuilder();
+        boolean firstRow = true;
+        while (!cancelled.get() && readCsvRecord(reader, fields, field)) {
+            if (firstRow) {
+                firstRow = false;
+                if (!fields.isEmpty() && fields.get(0).trim().equalsIgnoreCase("word")) {
+                    continue;
+                }
+            }
+            if (fields.size() < 3) {
+                skipped++;
+                continue;
+            }
+            add(writer, fields.get(0), fields.get(1), fields.get(2), fields.size() > 3 ? fields.get(3) : null);
+            report(counter, totalBytes, listener);
+        }
+    }
+
+    /**
+     * Read one CSV record into fields, honouring quoted fields with embedded commas, doubled
+     * quotes and line breaks. Returns false at the end of the input.
+     */
+    static boolean readCsvRecord(Reader reader, ArrayList<String> fields, StringBuilder field) throws IOException {
+        fields.clear();
+        field.setLength(0);
+        boolean quoted = false;
+        boolean any = false;
+        int c;
+        while ((c = reader.read()) != -1) {
+            any = true;
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    if (reader.read() == '"') {
+                        field.append('"');
+                    } else {
+                        reader.reset();
+                        quoted = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+        }
+        if (!any) {
+            return false;
+        }
+        fields.add(field.toString());
+        return true;
+    }
+
+    private void readJson(Reader reader, CustomListStore.Writer writer, CountingInputStream counter,
+                          long totalBytes, ProgressListener listener) throws IOException {
+        JsonReader json = new JsonReader(reader);
+        json.setLenient(true);
+        json.beginArray();
+        while (!cancelled.get() && json.hasNext()) {
+            String word = null;
+            String definition = null;
+            String sentence = null;
+            String level = null;
+            json.beginObject();
+            while (json.hasNext()) {
+                String key = json.nextName();
+                if (json.peek() != JsonToken.STRING) {
+                    json.skipValue();
+                } else if (key.equals("word")) {
+                    word = json.nextString();
+                } else if (key.equals("definition")) {
+                    definition = json.nextString();
+                } else if (key.equals("sentence")) {
+                    sentence = json.nextString();
+                } else if (key.equals("level")) {
+                    level = json.nextString();
+                } else {
+                    json.skipValue();
+                }
+            }
+            json.endObject();
+            add(writer, word, definition, sentence, level);
+            report(counter, totalBytes, listener);
+        }
+    }
+
+    private void add(CustomListStore.Writer writer, String word, String definition, String sentence, String level) {
+        word = word == null ? "" : word.trim();
+        definition = definition == null ? "" : definition.trim();
+        sentence = sentence == null ? "" : sentence.trim();
+        if (word.isEmpty() || definition.isEmpty() || sentence.isEmpty()) {
+            skipped++;
+            return;
+        }
+        if (!sentence.contains("_")) {
+            // Blank out the word itself if the sentence came without a blank
+            int index = sentence.toLowerCase(Locale.US).indexOf(word.toLowerCase(Locale.US));
+            if (index < 0) {
+                skipped++;
+                return;
+            }
+            sentence = sentence.substring(0, index) + BLANK + sentence.substring(index + word.length());
+        }
+        // Repeated words would give multiple choice questions two identical options
+        if (writer.add(matchLevel(level), word, definition, sentence)) {
+            imported++;
+        } else {
+            skipped++;
+        }
+    }
+
+    private String matchLevel(String level) {
+        if (level != null) {
+            for (String candidate : levels) {
+                if (candidate.equalsIgnoreCase(level.trim())) {
+                    return candidate;
+                }
+            }
+        }
+        return levels[0];
+    }
+
+    private void report(CountingInputStream counter, long totalBytes, ProgressListener listener) {
+        if (listener != null && (imported + skipped) % PROGRESS_INTERVAL == 0) {
+            listener.onProgress(imported, counter.count, totalBytes);
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+}
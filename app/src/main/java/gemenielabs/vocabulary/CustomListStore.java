@@ -0,0 +1,300 @@
+package gemenielabs.vocabulary;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Local store for imported word lists. Entries are indexed by list, level and position so a
+ * level loads with one range scan, and imports insert through a compiled statement in
+ * batches, so neither side needs the whole list in memory. A unique index on list, level and
+ * case folded word keeps repeats out without the importer remembering what it has written.
+ * Each entry also stores its row of the level's {@link ConfusableIndex}, built once per level
+ * when the import ends, so loading a level never has to build the index again.
+ */
+public class CustomListStore extends SQLiteOpenHelper {
+
+    private static final String DATABASE_NAME = "custom_lists.db";
+    private static final int DATABASE_VERSION = 3;
+
+    private static final String TABLE_LISTS = "lists";
+    private static final String TABLE_ENTRIES = "entries";
+    private static final String COLUMN_NAME = "name";
+    private static final String COLUMN_LIST = "list";
+    private static final String COLUMN_LEVEL = "level";
+    private static final String COLUMN_POSITION = "position";
+    private static final String COLUMN_WORD = "word";
+    private static final String COLUMN_DEFINITION = "definition";
+    private static final String COLUMN_SENTENCE = "sentence";
+    private static final String COLUMN_NEIGHBOURS = "neighbours";
+
+    private static CustomListStore instance;
+
+    public static synchronized CustomListStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new CustomListStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private CustomListStore(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_LISTS + " ("
+                + COLUMN_NAME + " TEXT PRIMARY KEY)");
+        db.execSQL("CREATE TABLE " + TABLE_ENTRIES + " ("
+                + COLUMN_LIST + " TEXT NOT NULL, "
+                + COLUMN_LEVEL + " TEXT NOT NULL, "
+                + COLUMN_POSITION + " INTEGER NOT NULL, "
+                + COLUMN_WORD + " TEXT NOT NULL, "
+                + COLUMN_DEFINITION + " TEXT NOT NULL, "
+                + COLUMN_SENTENCE + " TEXT NOT NULL, "
+                + COLUMN_NEIGHBOURS + " BLOB, "
+                + "PRIMARY KEY (" + COLUMN_LIST + ", " + COLUMN_LEVEL + ", " + COLUMN_POSITION + "))");
+        createWordIndex(db);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            // Lists imported before the index may repeat a word, keep its first entry
+            db.execSQL("DELETE FROM " + TABLE_ENTRIES + " WHERE rowid NOT IN (SELECT MIN(rowid) FROM "
+                    + TABLE_ENTRIES + " GROUP BY " + COLUMN_LIST + ", " + COLUMN_LEVEL + ", "
+                    + COLUMN_WORD + " COLLATE NOCASE)");
+            createWordIndex(db);
+        }
+        if (oldVersion < 3) {
+            // Lists imported before this build their index once when first played
+            db.execSQL("ALTER TABLE " + TABLE_ENTRIES + " ADD COLUMN " + COLUMN_NEIGHBOURS + " BLOB");
+        }
+    }
+
+    private static void createWordIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE UNIQUE INDEX " + TABLE_ENTRIES + "_word ON " + TABLE_ENTRIES + " ("
+                + COLUMN_LIST + ", " + COLUMN_LEVEL + ", " + COLUMN_WORD + " COLLATE NOCASE)");
+    }
+
+    /**
+     * Names of all imported lists mapped to their word count per level, in the order of levels.
+     */
+    public Map<String, int[]> listSizes(String[] levels) {
+        Map<String, int[]> sizes = new LinkedHashMap<>();
+        SQLiteDatabase db = getReadableDatabase();
+        try (Cursor cursor = db.query(TABLE_LISTS, new String[]{COLUMN_NAME}, null, null, null, null, "rowid")) {
+            while (cursor.moveToNext()) {
+                sizes.put(cursor.getString(0), new int[levels.length]);
+            }
+        }
+        try (Cursor cursor = db.rawQuery("SELECT " + COLUMN_LIST + ", " + COLUMN_LEVEL + ", COUNT(*) FROM "
+                + TABLE_ENTRIES + " GROUP BY " + COLUMN_LIST + ", " + COLUMN_LEVEL, null)) {
+            while (cursor.moveToNext()) {
+                int[] levelSizes = sizes.get(cursor.getString(0));
+                for (int i = 0; levelSizes != null && i < levels.length; i++) {
+                    if (levels[i].equals(cursor.getString(1))) {
+                        levelSizes[i] = cursor.getInt(2);
+                    }
+                }
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * One level of an imported list.
+     */
+    public static class Level {
+        public final String[] words;
+        public final String[] definitions;
+        public final String[] sentences;
+        // Null for a level imported before indexes were stored
+        public final ConfusableIndex confusables;
+
+        Level(String[] words, String[] definitions, String[] sentences, ConfusableIndex confusables) {
+            this.words = words;
+            this.definitions = definitions;
+            this.sentences = sentences;
+            this.confusables = confusables;
+        }
+    }
+
+    /**
+     * Load one level of a list with its stored confusable words index.
+     */
+    public Level loadLevel(String list, String level) {
+        ArrayList<String> words = new ArrayList<>();
+        ArrayList<String> definitions = new ArrayList<>();
+        ArrayList<String> sentences = new ArrayList<>();
+        ArrayList<byte[]> neighbours = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_ENTRIES,
+                new String[]{COLUMN_WORD, COLUMN_DEFINITION, COLUMN_SENTENCE, COLUMN_NEIGHBOURS},
+                COLUMN_LIST + " = ? AND " + COLUMN_LEVEL + " = ?", new String[]{list, level},
+                null, null, COLUMN_POSITION)) {
+            while (cursor.moveToNext()) {
+                words.add(cursor.getString(0));
+                definitions.add(cursor.getString(1));
+                sentences.add(cursor.getString(2));
+                neighbours.add(cursor.isNull(3) ? null : cursor.getBlob(3));
+            }
+        }
+        return new Level(
+                words.toArray(new String[0]),
+                definitions.toArray(new String[0]),
+                sentences.toArray(new String[0]),
+                ConfusableIndex.decode(neighbours.toArray(new byte[0][]), ConfusableIndex.DEFAULT_NEIGHBOURS));
+    }
+
+    /**
+     * Build a level's confusable words index and store it. Runs on the calling thread and
+     * takes a few seconds for tens of thousands of words, so call it off the main thread.
+     */
+    public ConfusableIndex buildConfusables(String list, String level) {
+        Level loaded = loadLevel(list, level);
+        ConfusableIndex confusables = ConfusableIndex.build(loaded.words, loaded.definitions,
+                ConfusableIndex.DEFAULT_NEIGHBOURS);
+        saveConfusables(list, level, confusables);
+        return confusables;
+    }
+
+    /**
+     * Store each word's row of a level's index, in the order {@link #loadLevel} returns them.
+     */
+    public void saveConfusables(String list, String level, ConfusableIndex confusables) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try (Cursor cursor = db.query(TABLE_ENTRIES, new String[]{"rowid"},
+                COLUMN_LIST + " = ? AND " + COLUMN_LEVEL + " = ?", new String[]{list, level},
+                null, null, COLUMN_POSITION);
+             SQLiteStatement update = db.compileStatement("UPDATE " + TABLE_ENTRIES + " SET "
+                     + COLUMN_NEIGHBOURS + " = ? WHERE rowid = ?")) {
+            // Positions can have gaps where an upgrade dropped repeated words, rowids match rows
+            for (int word = 0; word < confusables.size() && cursor.moveToNext(); word++) {
+                update.bindBlob(1, confusables.encode(word));
+                update.bindLong(2, cursor.getLong(0));
+                update.executeUpdateDelete();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    public boolean hasList(String name) {
+        try (Cursor cursor = getReadableDatabase().query(TABLE_LISTS, new String[]{COLUMN_NAME},
+                COLUMN_NAME + " = ?", new String[]{name}, null, null, null)) {
+            return cursor.moveToFirst();
+        }
+    }
+
+    /**
+     * Start writing a new list. Entries are committed every batch, and the list only shows up
+     * in {@link #listSizes(String[])} once {@link Writer#finish()} is called. Entries left under
+     * the name by an import that was killed part way are removed first.
+     */
+    public Writer openWriter(String name, int batchSize) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.delete(TABLE_ENTRIES, COLUMN_LIST + " = ?", new String[]{name});
+        return new Writer(db, name, batchSize);
+    }
+
+    public static class Writer {
+        private final SQLiteDatabase db;
+        private final String name;
+        private final int batchSize;
+        private final SQLiteStatement insert;
+        private final Map<String, Integer> positions = new LinkedHashMap<>();
+        private int pending;
+
+        Writer(SQLiteDatabase db, String name, int batchSize) {
+            this.db = db;
+            this.name = name;
+            this.batchSize = batchSize;
+            this.insert = db.compileStatement("INSERT OR IGNORE INTO " + TABLE_ENTRIES + " ("
+                    + COLUMN_LIST + ", " + COLUMN_LEVEL + ", " + COLUMN_POSITION + ", "
+                    + COLUMN_WORD + ", " + COLUMN_DEFINITION + ", " + COLUMN_SENTENCE
+                    + ") VALUES (?, ?, ?, ?, ?, ?)");
+        }
+
+        /**
+         * Add an entry, returning false if the level already has the word.
+         */
+        public boolean add(String level, String word, String definition, String sentence) {
+            if (pending == 0) {
+                db.beginTransaction();
+            }
+            Integer position = positions.get(level);
+            position = position == null ? 0 : position;
+
+            insert.bindString(1, name);
+            insert.bindString(2, level);
+            insert.bindLong(3, position);
+            insert.bindString(4, word);
+            insert.bindString(5, definition);
+            insert.bindString(6, sentence);
+            boolean added = insert.executeInsert() != -1;
+            if (added) {
+                positions.put(level, position + 1);
+            }
+
+            if (++pending == batchSize) {
+                commitBatch();
+            }
+            return added;
+        }
+
+        private void commitBatch() {
+            if (pending > 0) {
+                db.setTransactionSuccessful();
+                db.endTransaction();
+                pending = 0;
+            }
+        }
+
+        /**
+         * Commit the open batch so the entries written so far can be read back.
+         */
+        public void flush() {
+            commitBatch();
+        }
+
+        /**
+         * Levels written to so far.
+         */
+        public Set<String> levels() {
+            return positions.keySet();
+        }
+
+        /**
+         * Commit the last batch and register the list.
+         */
+        public void finish() {
+            commitBatch();
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_NAME, name);
+            db.insertWithOnConflict(TABLE_LISTS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            insert.close();
+        }
+
+        /**
+         * Roll back the open batch and remove everything written so far.
+         */
+        public void abort() {
+            if (pending > 0) {
+                db.endTransaction();
+                pending = 0;
+            }
+            insert.close();
+            db.delete(TABLE_ENTRIES, COLUMN_LIST + " = ?", new String[]{name});
+        }
+    }
+}
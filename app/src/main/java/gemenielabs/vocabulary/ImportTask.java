@@ -0,0 +1,166 @@
+package gemenielabs.vocabulary;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.OpenableColumns;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import builder.gemenielabs.vocabulary.R;
+
+/**
+ * Runs one {@link CustomListImporter} at a time for the whole process rather than for one
+ * activity, so a rotation or a dark mode switch does not abort a long import. The quiz screen
+ * attaches a listener when it resumes and detaches when it pauses; the latest status is
+ * replayed to a newly attached listener. All state apart from the import itself is touched
+ * on the main thread only.
+ */
+public class ImportTask {
+
+    private static final String TAG = "trouble";
+
+    public interface Listener {
+        /**
+         * Called on the main thread with the text to show and whether the import has ended.
+         */
+        void onImportStatus(String status, boolean finished);
+    }
+
+    private static ImportTask instance;
+
+    public static synchronized ImportTask getInstance() {
+        if (instance == null) {
+            instance = new ImportTask();
+        }
+        return instance;
+    }
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private CustomListImporter importer;
+    private Listener listener;
+    private String status;
+    private boolean finished;
+
+    private ImportTask() {
+    }
+
+    public boolean isRunning() {
+        return importer != null;
+    }
+
+    public void attach(Listener listener) {
+        this.listener = listener;
+        if (status != null) {
+            deliver();
+        }
+    }
+
+    public void detach() {
+        listener = null;
+    }
+
+    /**
+     * Ask the running import to stop; everything it wrote is removed.
+     */
+    public void cancel() {
+        if (importer != null) {
+            importer.cancel();
+        }
+    }
+
+    /**
+     * Stream the picked CSV or JSON file into the custom list store in the background.
+     */
+    public void start(Context context, Uri uri) {
+        if (importer != null) {
+            return;
+        }
+        final Context appContext = context.getApplicationContext();
+        final CustomListImporter runningImporter = new CustomListImporter(CustomListStore.getInstance(appContext),
+                appContext.getResources().getStringArray(R.array.sub_list_array),
+                appContext.getResources().getStringArray(R.array.working_list_array));
+        importer = runningImporter;
+
+        executor.execute(() -> {
+            String message;
+            try {
+                message = importList(appContext, runningImporter, uri);
+            } catch (IOException | RuntimeException e) {
+                // A revoked or unreadable uri must still end the import
+                Log.w(TAG, "start: " + uri, e);
+                message = appContext.getString(R.string.import_failed);
+            }
+            post(message, true);
+        });
+    }
+
+    /**
+     * Run the import on the calling thread and return the message to show when it ends.
+     */
+    private String importList(Context appContext, CustomListImporter runningImporter, Uri uri) throws IOException {
+        String displayName = "Imported List";
+        long totalBytes = -1;
+        try (Cursor cursor = appContext.getContentResolver().query(uri, null, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                int nameIndex = cursor.getColumnIndex(OpenableColumns.DISPLAY_NAME);
+                int sizeIndex = cursor.getColumnIndex(OpenableColumns.SIZE);
+                if (nameIndex >= 0 && !cursor.isNull(nameIndex)) {
+                    displayName = cursor.getString(nameIndex);
+                }
+                if (sizeIndex >= 0 && !cursor.isNull(sizeIndex)) {
+                    totalBytes = cursor.getLong(sizeIndex);
+                }
+            }
+        }
+        String type = appContext.getContentResolver().getType(uri);
+        boolean json = displayName.toLowerCase(Locale.US).endsWith(".json") || (type != null && type.contains("json"));
+        final String listName = displayName.contains(".")
+                ? displayName.substring(0, displayName.lastIndexOf('.'))
+                : displayName;
+
+        try (InputStream input = appContext.getContentResolver().openInputStream(uri)) {
+            CustomListImporter.Result importResult = runningImporter.importList(input, json, listName, totalBytes,
+                    (imported, bytesRead, total) -> {
+                        String progress = "Importing " + listName + "\n\n" + imported + " Words";
+                        if (total > 0) {
+                            progress += "\n" + (bytesRead * 100 / total) + "%";
+                        }
+                        post(progress, false);
+                    });
+            return importResult.cancelled
+                    ? appContext.getString(R.string.import_cancelled)
+                    : "Imported " + importResult.imported + " Words into " + importResult.listName
+                            + "\n\n" + importResult.skipped + " Skipped";
+        }
+    }
+
+    private void post(String newStatus, boolean done) {
+        mainHandler.post(() -> {
+            if (done) {
+                importer = null;
+            }
+            status = newStatus;
+            finished = done;
+            if (listener != null) {
+                deliver();
+            }
+        });
+    }
+
+    private void deliver() {
+        listener.onImportStatus(status, finished);
+        // The result is shown once; progress stays until the next update replaces it
+        if (finished) {
+            status = null;
+        }
+    }
+}
@@ -22,8 +22,13 @@ package gemenielabs.vocabulary;
 import android.animation.AnimatorSet;
 import android.animation.ObjectAnimator;
 import android.content.SharedPreferences;
+import android.content.res.Resources;
+import android.net.Uri;
 import android.inputmethodservice.InputMethodService;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
@@ -37,10 +42,21 @@ import android.widget.ProgressBar;
 import android.widget.RelativeLayout;
 import android.widget.TextView;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 
 import builder.gemenielabs.vocabulary.R;
@@ -57,10 +73,15 @@ public class MainActivity extends AppCompatActivity {
     public static final String WORKING_LIST = "working_list";
     public static final String PROGRESSBAR_SIZE = "progressbar_size";
     public static final String USER_RESET = "user_reset";
+    public static final String PREFS_NAME = "ice_nine.cj.vocabbuilder";
+
+    // Confusable words offered as wrong answers per question, and queued for review per miss
+    private static final int CONFUSABLE_OPTIONS = 2;
+    private static final int MAX_REVIEW_QUEUE = 4;
     public static String[] vocabWordList;
     public static String[] vocabWordDefinitionList;
     public static String[] fillInTheBlankList;
-    public ArrayList<Integer> answered = new ArrayList<>();
+    QuizSession session;
     int wordIndex;
     Random mRnd;
     EditText fillInTheBlankEditText;
@@ -92,10 +113,35 @@ public class MainActivity extends AppCompatActivity {
     int progressbarSize;
     String workingList;
     SharedPreferences sharedPreferences;
+    ProfileManager profileManager;
+    String profile;
+    // False from opening a profile until its progress has loaded and been checked for loss
+    boolean profileLoaded;
     String purchaseToken;
     String subList;
     LinearLayout listPickView;
     boolean isAnswerCorrect;
+    WordListCache wordListCache;
+    WordListCache.Entry currentEntry;
+    CustomListStore customListStore;
+    Map<String, int[]> customListSizes = new LinkedHashMap<>();
+    ImportTask importTask;
+    ActivityResultLauncher<String[]> importLauncher;
+    ExecutorService backgroundExecutor;
+    // Building a confusable words index can take seconds, so it never holds up the executor above
+    ExecutorService indexExecutor;
+    AdaptiveDifficultyEngine adaptiveEngine;
+    ArrayDeque<Integer> borrowedQueue = new ArrayDeque<>();
+    WordListCache.Entry borrowedEntry;
+    int borrowedLevel;
+    int borrowedIndex = -1;
+    ArrayDeque<Integer> reviewQueue = new ArrayDeque<>();
+    long questionShownAt;
+    ProgressSummary progressSummary;
+    SprintSession sprint;
+    SprintLeaderboard sprintLeaderboard;
+    Handler sprintHandler = new Handler(Looper.getMainLooper());
+    Runnable sprintTicker = this::sprintTick;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -107,6 +153,19 @@ public class MainActivity extends AppCompatActivity {
     
         // Initialize a new Random object
 
+        // Decoded lists are kept around so switching back to a recent list is free
+        wordListCache = new WordListCache(this);
+
+        // Imported lists are read off the main thread and added to the options menu when ready
+        backgroundExecutor = Executors.newSingleThreadExecutor();
+        indexExecutor = Executors.newSingleThreadExecutor();
+        customListStore = CustomListStore.getInstance(this);
+        importLauncher = registerForActivityResult(new ActivityResultContracts.OpenDocument(), this::importList);
+        importTask = ImportTask.getInstance();
+        loadCustomLists();
+
+        // Rolling accuracy per word and level decides when to mix in harder or easier words
+        adaptiveEngine = new AdaptiveDifficultyEngine(getResources().getStringArray(R.array.sub_list_array).length, adaptiveConfig());
     
         // Initialize variables and set initial values
         learnWordsCount = 0;
@@ -116,11 +175,17 @@ public class MainActivity extends AppCompatActivity {
         isAnswerCorrect = true;
         resetListButton.setClickable(false);
     
-        // Get shared preferences and retrieve stored values
-        sharedPreferences = this.getSharedPreferences("ice_nine.cj.vocabbuilder", MODE_PRIVATE);
+        // Get the active profile's shared preferences and retrieve stored values
+        profileManager = new ProfileManager(this);
+        profile = profileManager.activeId();
+        sharedPreferences = ProfileManager.open(this, profile);
         purchaseToken = sharedPreferences.getString("PURCHASE_TOKEN", "");
         workingList = sharedPreferences.getString(WORKING_LIST, "List A");
         progressbarSize = sharedPreferences.getInt(PROGRESSBAR_SIZE, 120);
+        sprintLeaderboard = new SprintLeaderboard(sharedPreferences);
+        // Nothing is saved until lost progress has been restored
+        restoreLostProgress(false);
+        loadProgressSummary();
     
         // Set the progress bar properties
         progressBar.setMax(progressbarSize);
@@ -128,6 +193,9 @@ public class MainActivity extends AppCompatActivity {
     
         // Set the question text to the working list
         questionTextView.setText(workingList);
+
+        // Compact progress storage and refresh the backup snapshot while idle or charging
+        ProgressMaintenanceWorker.schedule(this);
     
         // Log the progress bar size and current progress count
         Log.i(TAG, "onCreate: " + progressbarSize);
@@ -138,12 +206,23 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onResume() {
         super.onResume();
-        workingList = sharedPreferences.getString(WORKING_LIST, "List A");
-        progressbarSize = sharedPreferences.getInt(PROGRESSBAR_SIZE, 120);
-        progressBar.setMax(progressbarSize);
-        progressBar.setProgress(getProgressCount(workingList));
-        questionTextView.setText(workingList);
+        // A profile still loading shows its state once loaded
+        if (profileLoaded) {
+            workingList = sharedPreferences.getString(WORKING_LIST, "List A");
+            progressbarSize = sharedPreferences.getInt(PROGRESSBAR_SIZE, 120);
+            progressBar.setMax(progressbarSize);
+            progressBar.setProgress(getProgressCount(workingList));
+            questionTextView.setText(workingList);
+        }
+        ProgressMaintenanceWorker.setQuizInForeground(true);
+        // Replays the status of an import that is still running or finished meanwhile
+        importTask.attach(this::onImportStatus);
+    }
 
+    @Override
+    protected void onPause() {
+        super.onPause();
+        importTask.detach();
     }
 
     public void findViews(){
@@ -197,7 +276,28 @@ public class MainActivity extends AppCompatActivity {
         listPickView.setVisibility(View.GONE);
         subList = (String) v.getTag();
         Log.i(TAG, "pickWordList: SubList  " + subList);
-        buildList();
+        questionTextView.setText(workingList + " " + subList.toUpperCase());
+        // Nothing of the previous level is asked while this one loads
+        session = null;
+        currentEntry = null;
+        final String pickedList = workingList;
+        final String pickedLevel = subList;
+        withEntry(workingList, subList, entry -> {
+            // Skip it if another list or level was picked while this one loaded
+            if (pickedList.equals(workingList) && pickedLevel.equals(subList)) {
+                startLevel(entry);
+            }
+        });
+    }
+
+    private void startLevel(WordListCache.Entry entry) {
+        buildList(entry);
+        if (currentEntry.distinctWords < 4) {
+            // Multiple choice needs four different words, which small imported levels may lack
+            listPickView.setVisibility(View.VISIBLE);
+            questionTextView.setText(workingList + " " + subList.toUpperCase() + "\n\n" + getString(R.string.level_too_small));
+            return;
+        }
         progressbarSize = vocabWordList.length * 3;
         progressBar.setMax(progressbarSize);
         progressBar.setProgress(updateProgressBar());
@@ -213,18 +313,28 @@ public class MainActivity extends AppCompatActivity {
     public void pickWord() {
         // Picks a word from the vocabulary word list
         wordIndex = mRnd.nextInt(vocabWordList.length);
-        while(answered.get(wordIndex) == 3 || (wordIndex == indexHolder && updateProgressBar() < progressBar.getMax() - 3)) {
+        while(session.get(wordIndex) == QuizSession.MASTERED || (wordIndex == indexHolder && updateProgressBar() < progressBar.getMax() - 3)) {
             wordIndex = mRnd.nextInt(vocabWordList.length);
         }
         indexHolder = wordIndex;
     }
     
     public void askQuestion() {
-        // Asks a question by picking a word and determining the question type
-        pickWord();
-        if (answered.get(wordIndex) == 1) {
+        // Words pulled in from a neighbouring level go first, as multiple choice
+        if (!borrowedQueue.isEmpty()) {
+            borrowedIndex = borrowedQueue.poll();
+            borrowedDefinition();
+            return;
+        }
+        borrowedIndex = -1;
+
+        // Words easily confused with a recent wrong answer come next, otherwise pick one
+        if (!nextReviewWord()) {
+            pickWord();
+        }
+        if (session.get(wordIndex) == 1) {
             fillInTheBlank();
-        } else if (answered.get(wordIndex) == 2) {
+        } else if (session.get(wordIndex) == 2) {
             definition();
         } else {
             int random = mRnd.nextInt(2);
@@ -236,6 +346,21 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * Move to the next queued confusable word that is not mastered yet, if there is one.
+     */
+    private boolean nextReviewWord() {
+        while (!reviewQueue.isEmpty()) {
+            int index = reviewQueue.poll();
+            if (session.get(index) != QuizSession.MASTERED) {
+                wordIndex = index;
+                indexHolder = index;
+                return true;
+            }
+        }
+        return false;
+    }
+
     public void learnWords(View view) {
         // Check if there are more words to learn
         if (learnWordsCount < vocabWordList.length) {
@@ -306,12 +431,13 @@ public class MainActivity extends AppCompatActivity {
             if (isCorrect) {
                 result.setText(R.string.correct);
                 isAnswerCorrect = true;
-                answered.set(wordIndex, answered.get(wordIndex) == 1 ? 3 : 2);
+                session.set(wordIndex, session.get(wordIndex) == 1 ? 3 : 2);
             } else {
                 result.setText(R.string.wrong);
                 isAnswerCorrect = false;
             }
 
+            recordAdaptive(isAnswerCorrect);
             resultAnimation();
             answerCheck(2);
         }
@@ -322,6 +448,7 @@ public class MainActivity extends AppCompatActivity {
         questionTextView.setText(fillInTheBlankList[wordIndex]);
         buttonQuestionVisibility(3);
         buttonState(1);
+        questionShownAt = SystemClock.elapsedRealtime();
     }
     
     public void definition() {
@@ -330,79 +457,255 @@ public class MainActivity extends AppCompatActivity {
         buttonQuestionVisibility(2);
         buttonState(2);
         randomButton = mRnd.nextInt(4);
-        setButtonText(definitionAnswerButton1);
-        setButtonText(definitionAnswerButton2);
-        setButtonText(definitionAnswerButton3);
-        setButtonText(definitionAnswerButton4);
+        clearAnswerButtons();
+        setButtonText(definitionAnswerButton1, vocabWordList, wordIndex, currentEntry.confusables);
+        setButtonText(definitionAnswerButton2, vocabWordList, wordIndex, currentEntry.confusables);
+        setButtonText(definitionAnswerButton3, vocabWordList, wordIndex, currentEntry.confusables);
+        setButtonText(definitionAnswerButton4, vocabWordList, wordIndex, currentEntry.confusables);
+        questionShownAt = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * Display a definition question for a word borrowed from a neighbouring level.
+     */
+    public void borrowedDefinition() {
+        questionTextView.setText(borrowedEntry.definitions[borrowedIndex]);
+        buttonQuestionVisibility(2);
+        buttonState(2);
+        randomButton = mRnd.nextInt(4);
+        clearAnswerButtons();
+        setButtonText(definitionAnswerButton1, borrowedEntry.words, borrowedIndex, borrowedEntry.confusables);
+        setButtonText(definitionAnswerButton2, borrowedEntry.words, borrowedIndex, borrowedEntry.confusables);
+        setButtonText(definitionAnswerButton3, borrowedEntry.words, borrowedIndex, borrowedEntry.confusables);
+        setButtonText(definitionAnswerButton4, borrowedEntry.words, borrowedIndex, borrowedEntry.confusables);
+        questionShownAt = SystemClock.elapsedRealtime();
     }
 
-    public void setButtonText(Button button) {
+    /**
+     * Empty the answer buttons so only this question's answers count as duplicates. A small
+     * level's previous question can show every other word it has.
+     */
+    private void clearAnswerButtons() {
+        definitionAnswerButton1.setText("");
+        definitionAnswerButton2.setText("");
+        definitionAnswerButton3.setText("");
+        definitionAnswerButton4.setText("");
+    }
+
+    public void setButtonText(Button button, String[] words, int answerIndex, ConfusableIndex confusables) {
         String text = button.getTag().toString().equals(String.valueOf(randomButton))
-                ? vocabWordList[wordIndex]
-                : getUniqueIncorrectAnswer();
+                ? words[answerIndex]
+                : getUniqueIncorrectAnswer(words, answerIndex, confusables);
 
         button.setText(text);
     }
 
-    private String getUniqueIncorrectAnswer() {
+    private String getUniqueIncorrectAnswer(String[] words, int answerIndex, ConfusableIndex confusables) {
+        // The closest look-alikes make the best wrong answers, the rest are random
+        if (confusables != null) {
+            for (int rank = 0; rank < CONFUSABLE_OPTIONS; rank++) {
+                int neighbour = confusables.neighbour(answerIndex, rank);
+                if (neighbour >= 0 && !isDuplicateAnswer(words, neighbour, answerIndex)) {
+                    return words[neighbour];
+                }
+            }
+        }
+
         int index;
         do {
-            index = mRnd.nextInt(vocabWordList.length);
-        } while (isDuplicateAnswer(index));
+            index = mRnd.nextInt(words.length);
+        } while (isDuplicateAnswer(words, index, answerIndex));
 
-        return vocabWordList[index];
+        return words[index];
     }
 
-    private boolean isDuplicateAnswer(int index) {
-        return index == wordIndex ||
-                definitionAnswerButton1.getText().equals(vocabWordList[index]) ||
-                definitionAnswerButton2.getText().equals(vocabWordList[index]) ||
-                definitionAnswerButton3.getText().equals(vocabWordList[index]) ||
-                definitionAnswerButton4.getText().equals(vocabWordList[index]);
+    private boolean isDuplicateAnswer(String[] words, int index, int answerIndex) {
+        return index == answerIndex ||
+                words[index].equals(words[answerIndex]) ||
+                definitionAnswerButton1.getText().equals(words[index]) ||
+                definitionAnswerButton2.getText().equals(words[index]) ||
+                definitionAnswerButton3.getText().equals(words[index]) ||
+                definitionAnswerButton4.getText().equals(words[index]);
     }
     
     public void definitionAnswer(View view) {
+        if (sprint != null) {
+            sprintAnswer(view);
+            return;
+        }
+
         // Check if the selected button matches the correct button
         if (view.getTag().toString().equals(String.valueOf(randomButton))) {
             result.setText(R.string.correct);
-            // Update answered status based on the current state
-            if (answered.get(wordIndex) == 2) {
-                answered.set(wordIndex, 3);
-            } else {
-                answered.set(wordIndex, 1);
+            // Update answered status based on the current state, borrowed words are not part of the session
+            if (borrowedIndex < 0) {
+                if (session.get(wordIndex) == 2) {
+                    session.set(wordIndex, 3);
+                } else {
+                    session.set(wordIndex, 1);
+                }
             }
             isAnswerCorrect = true;
         } else {
             result.setText(R.string.wrong);
             isAnswerCorrect = false;
         }
+        recordAdaptive(isAnswerCorrect);
         resultAnimation();
         answerCheck(1);
     }
+
+    /**
+     * Start a timed sprint over the active level. Questions come prefetched from the sprint and
+     * follow each other without the break view or slide animations.
+     */
+    public void startSprint() {
+        if (sprint != null) {
+            return;
+        }
+        if (session == null || listPickView.getVisibility() == View.VISIBLE) {
+            questionTextView.setText(R.string.sprint_pick_level);
+            return;
+        }
+        result.setText("");
+        resetListButton.setVisibility(View.GONE);
+        sprint = new SprintSession(vocabWordList, mRnd, SystemClock.elapsedRealtimeNanos());
+        buttonQuestionVisibility(2);
+        showSprintQuestion();
+        sprintHandler.post(sprintTicker);
+    }
+
+    private void showSprintQuestion() {
+        SprintSession.Question question = sprint.current();
+        questionTextView.setText(vocabWordDefinitionList[question.wordIndex]);
+        definitionAnswerButton1.setText(question.options[0]);
+        definitionAnswerButton2.setText(question.options[1]);
+        definitionAnswerButton3.setText(question.options[2]);
+        definitionAnswerButton4.setText(question.options[3]);
+        sprint.shown(SystemClock.elapsedRealtimeNanos());
+    }
+
+    private void sprintAnswer(View view) {
+        long now = SystemClock.elapsedRealtimeNanos();
+        boolean correct = sprint.answer(Integer.parseInt(view.getTag().toString()), now);
+        result.setText(correct ? R.string.correct : R.string.wrong);
+        resultAnimation();
+        if (sprint.isOver(now)) {
+            endSprint(true);
+        } else {
+            showSprintQuestion();
+        }
+    }
+
+    /**
+     * Show the seconds left in the title once a second and end the sprint when time is up.
+     */
+    private void sprintTick() {
+        long now = SystemClock.elapsedRealtimeNanos();
+        if (sprint.isOver(now)) {
+            endSprint(true);
+            return;
+        }
+        long remainingMillis = TimeUnit.NANOSECONDS.toMillis(sprint.remainingNanos(now));
+        setTitle(getString(R.string.sprint_title, (remainingMillis + 999) / 1000));
+        sprintHandler.postDelayed(sprintTicker, (remainingMillis % 1000) + 1);
+    }
+
+    /**
+     * Stop the sprint and, when it ran its full time, add the score to the leaderboard.
+     */
+    public void endSprint(boolean finished) {
+        sprintHandler.removeCallbacks(sprintTicker);
+        setTitle(R.string.app_name);
+        SprintSession endedSprint = sprint;
+        sprint = null;
+        buttonQuestionVisibility(1);
+        if (!finished) {
+            return;
+        }
+
+        int place = sprintLeaderboard.record(workingList, subList, endedSprint.score());
+        Log.i(TAG, "endSprint: " + endedSprint.score() + "/" + endedSprint.answered()
+                + " average " + endedSprint.averageLatencyMillis() + " ms");
+        String string = "Sprint Over\n\n" + endedSprint.score() + " Right out of " + endedSprint.answered()
+                + "\nAverage Answer " + endedSprint.averageLatencyMillis() + " ms\n\n"
+                + (place == 1 ? "New Best!\n\n" : "")
+                + "Best Scores\n" + SprintLeaderboard.format(sprintLeaderboard.best(workingList, subList));
+        questionTextView.setText(string);
+    }
+
+    /**
+     * Feed the answer to the adaptive engine and, when it asks for a harder or easier level,
+     * queue a few of that level's weakest words for the next questions.
+     */
+    private void recordAdaptive(boolean correct) {
+        long responseMillis = SystemClock.elapsedRealtime() - questionShownAt;
+        if (borrowedIndex >= 0) {
+            adaptiveEngine.recordAnswer(borrowedLevel, borrowedEntry.words[borrowedIndex], correct, responseMillis);
+            return;
+        }
+
+        String[] levels = getResources().getStringArray(R.array.sub_list_array);
+        int level = Arrays.asList(levels).indexOf(subList);
+        AdaptiveDifficultyEngine.Decision decision =
+                adaptiveEngine.recordAnswer(level, vocabWordList[wordIndex], correct, responseMillis);
+        if (decision == AdaptiveDifficultyEngine.Decision.STAY || !borrowedQueue.isEmpty()) {
+            return;
+        }
+
+        int target = AdaptiveDifficultyEngine.targetLevel(level, decision);
+        final WordListCache.Entry answeredEntry = currentEntry;
+        withEntry(workingList, levels[target], entry -> {
+            // The level may have changed or words been queued while this one loaded
+            if (currentEntry != answeredEntry || entry.distinctWords < 4 || !borrowedQueue.isEmpty()) {
+                return;
+            }
+            borrowedEntry = entry;
+            borrowedLevel = target;
+            for (int index : adaptiveEngine.selectWords(entry.words, getResources().getInteger(R.integer.adaptive_borrowed_words))) {
+                borrowedQueue.add(index);
+            }
+            Log.i(TAG, "recordAdaptive: " + decision + " to " + levels[target] + " accuracy " + adaptiveEngine.levelAccuracy(level));
+        });
+    }
+
+    /**
+     * Adaptive difficulty thresholds from resources.
+     */
+    private AdaptiveDifficultyEngine.Config adaptiveConfig() {
+        AdaptiveDifficultyEngine.Config config = new AdaptiveDifficultyEngine.Config();
+        config.smoothing = getResources().getInteger(R.integer.adaptive_smoothing_percent) / 100.0;
+        config.promoteAccuracy = getResources().getInteger(R.integer.adaptive_promote_percent) / 100.0;
+        config.demoteAccuracy = getResources().getInteger(R.integer.adaptive_demote_percent) / 100.0;
+        config.promoteMaxResponseMillis = getResources().getInteger(R.integer.adaptive_promote_max_response_ms);
+        config.minAnswers = getResources().getInteger(R.integer.adaptive_min_answers);
+        return config;
+    }
     
     public int updateProgressBar() {
-        int count = 0;
-        // Calculate the total count of answered questions
-        for (int i = 0; i < answered.size(); i++) {
-            count += answered.get(i);
-        }
-        return count;
+        // The session keeps a running total of answered questions
+        return session == null ? 0 : session.total();
     }
     
     public void answerCheck(int number) {
         buttonQuestionVisibility(1);
         nextQuestionButton.setText(R.string.questions);
         progressBar.setProgress(updateProgressBar());
-        if (!isAnswerCorrect) {
+        if (!isAnswerCorrect && borrowedIndex >= 0) {
+            // Borrowed words do not count against the list
+            String string = borrowedEntry.definitions[borrowedIndex] + "\n\n" + borrowedEntry.words[borrowedIndex];
+            questionTextView.setText(string);
+        } else if (!isAnswerCorrect) {
             wrongCount++;
+            String compare = queueConfusables();
             if (number == 1) {
                 // Display the definition and word for incorrect answers
-                String string = vocabWordDefinitionList[wordIndex] + "\n\n" + vocabWordList[wordIndex];
+                String string = vocabWordDefinitionList[wordIndex] + "\n\n" + vocabWordList[wordIndex] + compare;
                 questionTextView.setText(string);
             } else {
                 // Display the definition, word, and user answer for incorrect fill-in-the-blank answers
                 String string = vocabWordDefinitionList[wordIndex] + "\n\n" + vocabWordList[wordIndex] +
-                        "\n\n" + fillInTheBlankEditText.getText().toString();
+                        "\n\n" + fillInTheBlankEditText.getText().toString() + compare;
                 questionTextView.setText(string);
             }
         } else {
@@ -416,6 +719,30 @@ public class MainActivity extends AppCompatActivity {
         }
     }
     
+    /**
+     * Queue the unmastered words most easily confused with the missed one for review next, and
+     * return them as a line to show under the answer, or an empty string if there are none.
+     */
+    private String queueConfusables() {
+        ConfusableIndex confusables = currentEntry.confusables;
+        if (confusables == null) {
+            return "";
+        }
+        StringBuilder compare = new StringBuilder();
+        for (int rank = 0; rank < confusables.neighbours(); rank++) {
+            int neighbour = confusables.neighbour(wordIndex, rank);
+            if (neighbour < 0) {
+                break;
+            }
+            compare.append(compare.length() == 0 ? "\n\nCompare: " : ", ").append(vocabWordList[neighbour]);
+            if (reviewQueue.size() < MAX_REVIEW_QUEUE && session.get(neighbour) != QuizSession.MASTERED
+                    && !reviewQueue.contains(neighbour)) {
+                reviewQueue.add(neighbour);
+            }
+        }
+        return compare.toString();
+    }
+
     public void resultAnimation() {
         // Apply result animation by fading out the result text
         result.setAlpha(1f);
@@ -498,7 +825,7 @@ public class MainActivity extends AppCompatActivity {
 public void graduationCheck(View v) {
     result.setText("");
 
-    if (answered.contains(0) || answered.contains(1) || answered.contains(2)) {
+    if (!session.isComplete()) {
         askQuestion();
     } else {
         graduation();
@@ -513,21 +840,16 @@ public void resetList() {
     resetListButton.setVisibility(View.GONE);
 
     // Reset all answers to 0
-    for (int i = 0; i < answered.size(); i++) {
-        answered.set(i, 0);
-    }
+    session.reset();
     sharedPreferences.edit().putBoolean(USER_RESET + workingList + subList, true).apply();
 
     hintCount = 0;
     wrongCount = 0;
 
     // Save the updated values in SharedPreferences
-    for (int i = 0; i < answered.size(); i++) {
-        String identifier = String.valueOf(i);
-        sharedPreferences.edit().putInt(workingList + subList + identifier, answered.get(i)).apply();
-    }
-
-    sharedPreferences.edit()
+    SharedPreferences.Editor editor = sharedPreferences.edit();
+    saveSession(editor);
+    editor
             .putInt(HINT + workingList + subList, hintCount)
             .putInt(WRONG + workingList + subList, wrongCount)
             .apply();
@@ -599,46 +921,242 @@ public void buttonState(int changeState) {
 
 /**
  * Build the vocab word list, vocab word definition list, and fill in the blank list
- * based on the working list and sub list selected.
+ * from the entry of the working list and sub list selected.
+ */
+public void buildList(WordListCache.Entry entry) {
+    currentEntry = entry;
+    borrowedQueue.clear();
+    reviewQueue.clear();
+    borrowedIndex = -1;
+
+    vocabWordList = currentEntry.words;
+    vocabWordDefinitionList = currentEntry.definitions;
+    fillInTheBlankList = currentEntry.sentences;
+
+    // Log the length of the vocab word list and the cache counters
+    Log.i(TAG, "buildList: " + vocabWordList.length + " cache hits " + wordListCache.hitCount()
+            + " misses " + wordListCache.missCount());
+
+    // The session shares the cached answered values, replacing whatever list was active
+    session = new QuizSession(currentEntry.answered);
+    buildConfusables(currentEntry, workingList, subList);
+
+    // Load hint count and wrong count from SharedPreferences
+    hintCount = sharedPreferences.getInt(HINT + workingList + subList, hintCount);
+    wrongCount = sharedPreferences.getInt(WRONG + workingList + subList, wrongCount);
+}
+
+/**
+ * Build the confusable words index of a list in the background if it has none yet. Imported
+ * lists get theirs at import, so this builds the few words of a built in level, or stores
+ * the index of a list imported before indexes were stored so it is only built once.
+ */
+private void buildConfusables(WordListCache.Entry entry, String list, String level) {
+    if (entry.confusables != null || indexExecutor.isShutdown()) {
+        return;
+    }
+    final boolean imported = customListSizes.containsKey(list);
+    indexExecutor.execute(() -> {
+        if (entry.confusables == null) {
+            long start = SystemClock.elapsedRealtime();
+            ConfusableIndex confusables = ConfusableIndex.build(entry.words, entry.definitions, ConfusableIndex.DEFAULT_NEIGHBOURS);
+            if (imported) {
+                customListStore.saveConfusables(list, level, confusables);
+            }
+            entry.confusables = confusables;
+            Log.i(TAG, "buildConfusables: " + entry.words.length + " words in " + (SystemClock.elapsedRealtime() - start) + " ms");
+        }
+    });
+}
+
+/**
+ * Pass a list to the callback from the cache, loading and caching it on a miss. Imported
+ * levels can hold tens of thousands of rows, so they load on the background executor and
+ * the callback runs on the main thread once they are ready, unless the profile was switched
+ * meanwhile. Built in levels are small resource arrays and load straight away.
  */
-public void buildList() {
-    String[] workingListArray = getResources().getStringArray(R.array.working_list_array);
-    String[] subListArray = getResources().getStringArray(R.array.sub_list_array);
+private void withEntry(final String list, final String level, final Consumer<WordListCache.Entry> callback) {
+    WordListCache.Entry entry = wordListCache.get(list, level);
+    if (entry == null && !customListSizes.containsKey(list)) {
+        entry = loadEntry(list, level);
+        wordListCache.put(list, level, entry);
+    }
+    if (entry != null) {
+        callback.accept(entry);
+        return;
+    }
+    if (backgroundExecutor.isShutdown()) {
+        return;
+    }
+    final String loadingProfile = profile;
+    final SharedPreferences loadingPreferences = sharedPreferences;
+    backgroundExecutor.execute(() -> {
+        CustomListStore.Level customLevel = customListStore.loadLevel(list, level);
+        final WordListCache.Entry loaded = new WordListCache.Entry(customLevel.words, customLevel.definitions,
+                customLevel.sentences, loadAnswered(loadingPreferences, list, level, customLevel.words.length));
+        loaded.confusables = customLevel.confusables;
+        runOnUiThread(() -> {
+            if (isDestroyed() || !loadingProfile.equals(profile)) {
+                return;
+            }
+            // Keep an entry cached meanwhile, a session may already share its answered values
+            WordListCache.Entry cached = wordListCache.get(list, level);
+            if (cached == null) {
+                cached = loaded;
+                wordListCache.put(list, level, cached);
+            }
+            callback.accept(cached);
+        });
+    });
+}
+
+/**
+ * Decode the resource arrays of a built in list and load its answered values from SharedPreferences.
+ */
+private WordListCache.Entry loadEntry(String list, String level) {
+    int startingIndexOfLists = findListAddress(getResources(), list, level);
+
+    // Retrieve the lists from resources based on the starting index
+    String[] words = getResources().getStringArray(workingListAddress[startingIndexOfLists]);
+    String[] definitions = getResources().getStringArray(workingListAddress[startingIndexOfLists + 1]);
+    String[] sentences = getResources().getStringArray(workingListAddress[startingIndexOfLists + 2]);
+
+    return new WordListCache.Entry(words, definitions, sentences, loadAnswered(sharedPreferences, list, level, words.length));
+}
+
+/**
+ * Load the answered values of a list from SharedPreferences.
+ */
+private static int[] loadAnswered(SharedPreferences preferences, String list, String level, int size) {
+    int[] answeredValues = new int[size];
+    for (int i = 0; i < size; i++) {
+        answeredValues[i] = preferences.getInt(list + level + i, 0);
+    }
+    return answeredValues;
+}
+
+/**
+ * Find the index in workingListAddress of the word array for the working list and sub list.
+ */
+public static int findListAddress(Resources resources, String list, String level) {
+    String[] workingListArray = resources.getStringArray(R.array.working_list_array);
+    String[] subListArray = resources.getStringArray(R.array.sub_list_array);
     int startingIndexOfLists = 0;
 
     // Find the starting index of the lists based on working list and sub list
     for (int i = 0; i < workingListArray.length; i++) {
-        if (workingListArray[i].contains(workingList)) {
+        if (workingListArray[i].contains(list)) {
             startingIndexOfLists = i * 15;
 
             for (int j = 0; j < subListArray.length; j++) {
-                if (subListArray[j].contains(subList)) {
+                if (subListArray[j].contains(level)) {
                     int number = j * 3;
                     startingIndexOfLists += number;
                 }
             }
         }
     }
+    return startingIndexOfLists;
+}
 
-    // Retrieve the lists from resources based on the starting index
-    vocabWordList = getResources().getStringArray(workingListAddress[startingIndexOfLists]);
-    vocabWordDefinitionList = getResources().getStringArray(workingListAddress[startingIndexOfLists + 1]);
-    fillInTheBlankList = getResources().getStringArray(workingListAddress[startingIndexOfLists + 2]);
+/**
+ * Put the answered value of every word in the active session into the editor.
+ */
+private void saveSession(SharedPreferences.Editor editor) {
+    if (session == null) {
+        return;
+    }
+    // Unanswered words are the default, so leave them out like maintenance compaction does
+    for (int i = 0; i < session.size(); i++) {
+        if (session.get(i) == QuizSession.UNSEEN) {
+            editor.remove(workingList + subList + i);
+        } else {
+            editor.putInt(workingList + subList + i, session.get(i));
+        }
+    }
+    updateProgressSummary();
+}
 
-    // Log the length of the vocab word list
-    Log.i(TAG, "buildList: " + vocabWordList.length);
+/**
+ * Read the widget's progress summary in the background, building it once if it does not exist.
+ */
+private void loadProgressSummary() {
+    final String loadingProfile = profile;
+    final SharedPreferences loadingPreferences = sharedPreferences;
+    backgroundExecutor.execute(() -> {
+        ProgressSummary summary = ProgressSummary.read(this, loadingProfile);
+        if (summary == null) {
+            summary = ProgressSummary.rebuild(this, loadingPreferences);
+            writeProgressSummary(loadingProfile, summary.toBytes());
+        }
+        final ProgressSummary loadedSummary = summary;
+        runOnUiThread(() -> {
+            // Skip it if the profile was switched again meanwhile
+            if (loadingProfile.equals(profile)) {
+                progressSummary = loadedSummary;
+                // Imported lists read their progress from the summary, so show it now
+                if (profileLoaded && session == null && customListSizes.containsKey(workingList)) {
+                    progressBar.setProgress(getProgressCount(workingList));
+                }
+            }
+        });
+    });
+}
 
-    // Load the answered values from SharedPreferences and add them to the answered list
-    for (int i = 0; i < vocabWordList.length; i++) {
-        Log.i(TAG, "buildList: " + i);
+/**
+ * Store the active session's totals in the progress summary and write it out in the background.
+ * Before the summary has loaded, the file is updated after the load instead, which runs first
+ * on the same executor, and the loaded summary is given the same totals.
+ */
+private void updateProgressSummary() {
+    if (backgroundExecutor.isShutdown()) {
+        return;
+    }
+    String[] levels = getResources().getStringArray(R.array.sub_list_array);
+    final String list = workingList;
+    final int level = Arrays.asList(levels).indexOf(subList);
+    final int levelCount = levels.length;
+    final int total = session.total();
+    final int max = session.max();
+    final String savingProfile = profile;
+    if (progressSummary != null) {
+        progressSummary.update(list, level, levelCount, total, max);
+        final byte[] bytes = progressSummary.toBytes();
+        backgroundExecutor.execute(() -> writeProgressSummary(savingProfile, bytes));
+        return;
+    }
+    backgroundExecutor.execute(() -> {
+        ProgressSummary summary = ProgressSummary.read(this, savingProfile);
+        if (summary == null) {
+            // Rebuilt from the saved preferences when the profile is next opened
+            return;
+        }
+        summary.update(list, level, levelCount, total, max);
+        writeProgressSummary(savingProfile, summary.toBytes());
+        runOnUiThread(() -> {
+            if (savingProfile.equals(profile) && progressSummary != null) {
+                progressSummary.update(list, level, levelCount, total, max);
+            }
+        });
+    });
+}
 
-        String identifier = String.valueOf(i);
-        answered.add(sharedPreferences.getInt(workingList + subList + identifier, 0));
+private void writeProgressSummary(String summaryProfile, byte[] bytes) {
+    try {
+        ProgressSummary.write(this, summaryProfile, bytes);
+        ProgressWidgetProvider.refresh(this);
+    } catch (IOException e) {
+        Log.w(TAG, "writeProgressSummary: ", e);
     }
+}
 
-    // Load hint count and wrong count from SharedPreferences
-    hintCount = sharedPreferences.getInt(HINT + workingList + subList, hintCount);
-    wrongCount = sharedPreferences.getInt(WRONG + workingList + subList, wrongCount);
+/**
+ * Release cached lists when the system is running low on memory.
+ */
+@Override
+public void onTrimMemory(int level) {
+    super.onTrimMemory(level);
+    wordListCache.trimMemory(level);
 }
 
 /**
@@ -648,15 +1166,29 @@ public void buildList() {
 @Override
 protected void onStop() {
     super.onStop();
+    if (sprint != null) {
+        endSprint(false);
+    }
+    saveProgress();
+    // Only now is the session saved, so maintenance cannot compact away what was just written
+    ProgressMaintenanceWorker.setQuizInForeground(false);
+}
 
-    // Save the answered list in SharedPreferences
-    for (int i = 0; i < answered.size(); i++) {
-        String identifier = String.valueOf(i);
-        sharedPreferences.edit().putInt(workingList + subList + identifier, answered.get(i)).apply();
+/**
+ * Save the session and the screen's state to the active profile. Nothing is saved while a
+ * newly picked profile is loading: the fields still hold the previous profile's state, and
+ * editing would wait for the load on the main thread.
+ */
+private void saveProgress() {
+    if (!profileLoaded) {
+        return;
     }
+    // Save the answered list in SharedPreferences
+    SharedPreferences.Editor editor = sharedPreferences.edit();
+    saveSession(editor);
 
     // Save hint count, wrong count, purchase token, working list, and progress bar size in SharedPreferences
-    sharedPreferences.edit()
+    editor
             .putInt(HINT + workingList + subList, hintCount)
             .putInt(WRONG + workingList + subList, wrongCount)
             .putString("PURCHASE_TOKEN", purchaseToken)
@@ -671,6 +1203,13 @@ protected void onStop() {
 @Override
 public boolean onCreateOptionsMenu(Menu menu) {
     getMenuInflater().inflate(R.menu.main_menu, menu);
+
+    // Imported lists follow Lists A-H
+    int order = menu.size();
+    for (String name : customListSizes.keySet()) {
+        menu.add(Menu.NONE, Menu.NONE, order++, name);
+    }
+    menu.findItem(R.id.importList).setTitle(importTask.isRunning() ? R.string.cancel_import : R.string.import_list);
     return true;
 }
 
@@ -687,15 +1226,37 @@ public void fillInTheBlankHint(View view) {
  */
 @Override
 public boolean onOptionsItemSelected(MenuItem item) {
+    if (item.getItemId() == R.id.importList) {
+        if (importTask.isRunning()) {
+            importTask.cancel();
+        } else {
+            importLauncher.launch(new String[]{"text/*", "application/json"});
+        }
+        return true;
+    }
+    if (item.getItemId() == R.id.sprint) {
+        startSprint();
+        return true;
+    }
+    if (item.getItemId() == R.id.profiles) {
+        showProfiles();
+        return true;
+    }
+    if (!profileLoaded) {
+        return true;
+    }
+    if (sprint != null) {
+        endSprint(false);
+    }
+
     buttonQuestionVisibility(1);
     result.setText("");
     String id = item.getTitle().toString();
 
     // Save the answered list, hint count, and wrong count in SharedPreferences
-    for (int i = 0; i < answered.size(); i++) {
-        sharedPreferences.edit().putInt(workingList + subList + i, answered.get(i)).apply();
-    }
-    sharedPreferences.edit()
+    SharedPreferences.Editor editor = sharedPreferences.edit();
+    saveSession(editor);
+    editor
             .putInt(HINT + workingList + subList, hintCount)
             .putInt(WRONG + workingList + subList, wrongCount)
             .apply();
@@ -705,12 +1266,20 @@ public boolean onOptionsItemSelected(MenuItem item) {
     listPickView.setVisibility(View.VISIBLE);
     questionBreakView.setVisibility(View.GONE);
     questionTextView.setText(workingList);
-    answered.clear();
+    session = null;
+    currentEntry = null;
     progressbarSize = 120;
 
     if (id.equals("A List") || id.equals("B List")) {
         progressbarSize = 150;
     }
+    int[] customSizes = customListSizes.get(id);
+    if (customSizes != null) {
+        progressbarSize = 0;
+        for (int size : customSizes) {
+            progressbarSize += size * 3;
+        }
+    }
 
     progressBar.setMax(progressbarSize);
     progressBar.setProgress(getProgressCount(id));
@@ -718,9 +1287,150 @@ public boolean onOptionsItemSelected(MenuItem item) {
 }
 
 /**
- * Get the total count of answered questions for a specific working list.
+ * Show the profiles to pick from, with a button to add a new one.
+ */
+public void showProfiles() {
+    Map<String, String> profiles = profileManager.profiles();
+    final String[] ids = profiles.keySet().toArray(new String[0]);
+    String[] names = profiles.values().toArray(new String[0]);
+    new AlertDialog.Builder(this)
+            .setTitle(R.string.profiles)
+            .setSingleChoiceItems(names, Arrays.asList(ids).indexOf(profile), (dialog, which) -> {
+                dialog.dismiss();
+                switchProfile(ids[which]);
+            })
+            .setPositiveButton(R.string.new_profile, (dialog, which) -> newProfile())
+            .setNegativeButton(android.R.string.cancel, null)
+            .show();
+}
+
+private void newProfile() {
+    final EditText name = new EditText(this);
+    name.setHint(R.string.profile_name);
+    name.setSingleLine();
+    new AlertDialog.Builder(this)
+            .setTitle(R.string.new_profile)
+            .setView(name)
+            .setPositiveButton(android.R.string.ok, (dialog, which) -> {
+                String text = name.getText().toString().trim();
+                if (!text.isEmpty()) {
+                    switchProfile(profileManager.create(text));
+                }
+            })
+            .setNegativeButton(android.R.string.cancel, null)
+            .show();
+}
+
+/**
+ * Save the current profile and swap in another profile's progress store. Only the reference
+ * changes here; the new store is read on the background thread and the screen is updated
+ * once it is loaded. Other profiles' files are never opened.
+ */
+public void switchProfile(final String id) {
+    if (id.equals(profile) || backgroundExecutor.isShutdown()) {
+        return;
+    }
+    if (sprint != null) {
+        endSprint(false);
+    }
+    saveProgress();
+
+    // Cached lists and the running session hold the old profile's answers
+    session = null;
+    currentEntry = null;
+    borrowedQueue.clear();
+    reviewQueue.clear();
+    borrowedIndex = -1;
+    wordListCache.clear();
+    progressSummary = null;
+    hintCount = 0;
+    wrongCount = 0;
+    adaptiveEngine = new AdaptiveDifficultyEngine(getResources().getStringArray(R.array.sub_list_array).length, adaptiveConfig());
+
+    profile = id;
+    profileLoaded = false;
+    profileManager.setActive(id);
+    sharedPreferences = ProfileManager.open(this, id);
+    sprintLeaderboard = new SprintLeaderboard(sharedPreferences);
+    buttonQuestionVisibility(1);
+    questionBreakView.setVisibility(View.GONE);
+    listPickView.setVisibility(View.GONE);
+    result.setText("");
+    loadProgressSummary();
+
+    restoreLostProgress(true);
+    loadProgressSummary();
+}
+
+/**
+ * Check the active profile's progress in the background before the screen saves anything to
+ * it. Progress lost while the app was closed still has a snapshot, and the first save would
+ * hide the loss from maintenance, so it is restored here. The screen shows the profile and
+ * starts saving once this is done. The first read waits for a profile store to load, which
+ * also keeps that off the main thread. A profile just switched to is shown once checked.
+ */
+private void restoreLostProgress(final boolean switching) {
+    if (backgroundExecutor.isShutdown()) {
+        return;
+    }
+    final String loadingProfile = profile;
+    final SharedPreferences loadingPreferences = sharedPreferences;
+    backgroundExecutor.execute(() -> {
+        final boolean restored = ProgressSnapshot.restoreIfLost(this, loadingProfile, loadingPreferences);
+        if (restored) {
+            // Queued ahead of loadProgressSummary, which then reads the rebuilt summary
+            writeProgressSummary(loadingProfile, ProgressSummary.rebuild(this, loadingPreferences).toBytes());
+        } else {
+            ProgressWidgetProvider.refresh(this);
+        }
+        runOnUiThread(() -> {
+            if (!loadingProfile.equals(profile)) {
+                return;
+            }
+            if (restored) {
+                Log.i(TAG, "restoreLostProgress: restored " + loadingProfile);
+                session = null;
+                currentEntry = null;
+                wordListCache.clear();
+                buttonQuestionVisibility(1);
+                questionBreakView.setVisibility(View.GONE);
+            }
+            if (restored || switching) {
+                showProfile();
+            } else {
+                profileLoaded = true;
+            }
+        });
+    });
+}
+
+/**
+ * Show the working list and progress of the newly active profile.
+ */
+private void showProfile() {
+    profileLoaded = true;
+    purchaseToken = sharedPreferences.getString("PURCHASE_TOKEN", "");
+    workingList = sharedPreferences.getString(WORKING_LIST, "List A");
+    progressbarSize = sharedPreferences.getInt(PROGRESSBAR_SIZE, 120);
+    progressBar.setMax(progressbarSize);
+    progressBar.setProgress(getProgressCount(workingList));
+    String string = profileManager.profiles().get(profile) + "\n\n" + workingList;
+    questionTextView.setText(string);
+    listPickView.setVisibility(View.VISIBLE);
+    Log.i(TAG, "showProfile: " + profile + " " + workingList);
+}
+
+/**
+ * Get the total count of answered questions for a specific working list. Imported lists can
+ * hold tens of thousands of words, so theirs comes from the progress summary instead of one
+ * key per word, and is 0 until the summary has loaded.
  */
 public int getProgressCount(String id) {
+    int[] customSizes = customListSizes.get(id);
+    if (customSizes != null) {
+        return progressSummary == null ? 0 : progressSummary.total(id);
+    }
+
     int answeredCount = 0;
     String[] levelList = getResources().getStringArray(R.array.sub_list_array);
 
@@ -730,10 +1440,8 @@ public int getProgressCount(String id) {
         if (id.equals("A List") || id.equals("B List")) {
             size = 8;
         }
-
         for (int i = 0; i < size; i++) {
             answeredCount += sharedPreferences.getInt(id + levelList[j] + i, 0);
-            Log.i(TAG, "getProgressCount: " + levelList[j] + i);
         }
     }
 
@@ -742,7 +1450,68 @@ public int getProgressCount(String id) {
 
 
 
-    public int[] workingListAddress ={
+/**
+ * Read the imported lists and their level sizes in the background, then rebuild the menu.
+ */
+public void loadCustomLists() {
+    if (backgroundExecutor.isShutdown()) {
+        return;
+    }
+    final String[] levels = getResources().getStringArray(R.array.sub_list_array);
+    backgroundExecutor.execute(() -> {
+        final Map<String, int[]> sizes = customListStore.listSizes(levels);
+        runOnUiThread(() -> {
+            customListSizes = sizes;
+            invalidateOptionsMenu();
+        });
+    });
+}
+
+/**
+ * Stream the picked CSV or JSON file into the custom list store, showing progress in the
+ * question text. Picking the menu item again while this runs cancels the import.
+ */
+public void importList(Uri uri) {
+    if (uri == null || importTask.isRunning()) {
+        return;
+    }
+    importTask.start(this, uri);
+    invalidateOptionsMenu();
+    showImporting();
+}
+
+private void showImporting() {
+    listPickView.setVisibility(View.GONE);
+    buttonQuestionVisibility(1);
+    questionBreakView.setVisibility(View.GONE);
+}
+
+/**
+ * Show the progress or result of the import, which may have been started by an earlier
+ * instance of this screen.
+ */
+private void onImportStatus(String status, boolean finished) {
+    questionTextView.setText(status);
+    if (finished) {
+        invalidateOptionsMenu();
+        loadCustomLists();
+    } else {
+        showImporting();
+    }
+}
+
+@Override
+protected void onDestroy() {
+    super.onDestroy();
+    // The import outlives a configuration change, but not the screen being closed for good
+    if (isFinishing()) {
+        importTask.cancel();
+    }
+    backgroundExecutor.shutdown();
+    indexExecutor.shutdown();
+}
+
+    public static final int[] workingListAddress ={
             R.array.abasicWordList,
             R.array.abasicDefinitionWordList,
             R.array.abasicFillInTheBlank,
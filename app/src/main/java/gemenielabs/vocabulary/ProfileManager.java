@@ -0,0 +1,100 @@
+package gemenielabs.vocabulary;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import builder.gemenielabs.vocabulary.R;
+
+/**
+ * Learner profiles sharing one install. Each profile keeps its progress in its own file,
+ * opened only when that profile is selected. A small registry file holds the profile names
+ * and which one is active.
+ *
+ * The first profile uses the original preferences and file names, so existing progress
+ * carries over as that profile. The others use a {@link ProfileStore}, and only the active
+ * one is kept open, so memory holds at most the first profile and the active one however
+ * many profiles exist or have been visited.
+ */
+public class ProfileManager {
+
+    public static final String DEFAULT_PROFILE = "0";
+    private static final String REGISTRY_PREFS = MainActivity.PREFS_NAME + ".profiles";
+    private static final String ACTIVE = "active";
+    private static final String NEXT_ID = "next_id";
+    private static final String NAME = "name_";
+    private static final String STORE_FILE = "progress.bin";
+
+    private static String openProfile;
+    private static ProfileStore openStore;
+
+    private final SharedPreferences registry;
+    private final String defaultName;
+
+    public ProfileManager(Context context) {
+        registry = context.getSharedPreferences(REGISTRY_PREFS, Context.MODE_PRIVATE);
+        defaultName = context.getString(R.string.default_profile);
+    }
+
+    /**
+     * Name of a per-profile file in the files directory, such as the snapshot or summary.
+     */
+    public static String fileName(String profile, String base) {
+        return DEFAULT_PROFILE.equals(profile) ? base : "profile_" + profile + "_" + base;
+    }
+
+    /**
+     * Open a profile's progress. Returns straight away and reads the file in the background;
+     * the first read waits for it, so make that off the main thread when switching. Opening
+     * another profile releases the previously opened store.
+     */
+    public static synchronized SharedPreferences open(Context context, String profile) {
+        if (DEFAULT_PROFILE.equals(profile)) {
+            return context.getSharedPreferences(MainActivity.PREFS_NAME, Context.MODE_PRIVATE);
+        }
+        if (!profile.equals(openProfile)) {
+            openProfile = profile;
+            openStore = new ProfileStore(new File(context.getFilesDir(), fileName(profile, STORE_FILE)));
+        }
+        return openStore;
+    }
+
+    public String activeId() {
+        return registry.getString(ACTIVE, DEFAULT_PROFILE);
+    }
+
+    public void setActive(String profile) {
+        registry.edit().putString(ACTIVE, profile).apply();
+    }
+
+    /**
+     * Profile ids to names, the first profile first and the rest in the order they were made.
+     */
+    public Map<String, String> profiles() {
+        Map<String, String> profiles = new LinkedHashMap<>();
+        profiles.put(DEFAULT_PROFILE, registry.getString(NAME + DEFAULT_PROFILE, defaultName));
+        int nextId = registry.getInt(NEXT_ID, 1);
+        for (int id = 1; id < nextId; id++) {
+            String name = registry.getString(NAME + id, null);
+            if (name != null) {
+                profiles.put(String.valueOf(id), name);
+            }
+        }
+        return profiles;
+    }
+
+    /**
+     * Add a profile and return its id. Its preferences file is only created once it is used.
+     */
+    public String create(String name) {
+        int id = registry.getInt(NEXT_ID, 1);
+        registry.edit()
+                .putInt(NEXT_ID, id + 1)
+                .putString(NAME + id, name)
+                .apply();
+        return String.valueOf(id);
+    }
+}
@@ -0,0 +1,295 @@
+package gemenielabs.vocabulary;
+
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Progress preferences of a profile other than the first, kept in a file of their own.
+ *
+ * Context.getSharedPreferences keeps every file it has opened in memory until the process
+ * ends, so visiting many profiles would hold all of them. A store is an ordinary object
+ * instead: {@link ProfileManager} keeps only the active one and drops it on switching away.
+ * Entries use the {@link ProgressSnapshot} payload format. Loading and writing run on one
+ * shared background thread in order, so a store reopened right after a switch sees every
+ * write of the store it replaced; commit hands its write to that thread and waits for it.
+ * Like SharedPreferences, reads wait for the load to finish.
+ */
+public class ProfileStore implements SharedPreferences {
+
+    private static final String TAG = "trouble";
+    private static final ExecutorService IO = Executors.newSingleThreadExecutor();
+
+    private final AtomicFile file;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<OnSharedPreferenceChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private Map<String, Object> entries;
+    private boolean writeQueued;
+
+    public ProfileStore(File file) {
+        this.file = new AtomicFile(file);
+        IO.execute(this::load);
+    }
+
+    private void load() {
+        Map<String, Object> loaded;
+        try {
+            loaded = ProgressSnapshot.decode(file.readFully());
+        } catch (FileNotFoundException e) {
+            loaded = new HashMap<>();
+        } catch (IOException | RuntimeException e) {
+            // An empty store next to a snapshot gets restored when the profile is opened
+            Log.w(TAG, "load: unreadable profile store " + file.getBaseFile(), e);
+            loaded = new HashMap<>();
+        }
+        synchronized (this) {
+            entries = loaded;
+            notifyAll();
+        }
+    }
+
+    private void awaitLoaded() {
+        boolean interrupted = false;
+        while (entries == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized Object get(String key) {
+        awaitLoaded();
+        return entries.get(key);
+    }
+
+    @Override
+    public synchronized Map<String, ?> getAll() {
+        awaitLoaded();
+        return new HashMap<>(entries);
+    }
+
+    @Override
+    public String getString(String key, String defValue) {
+        Object value = get(key);
+        return value != null ? (String) value : defValue;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Set<String> getStringSet(String key, Set<String> defValues) {
+        Object value = get(key);
+        // Callers may not change the stored set, so like SharedPreferences hand out a copy
+        return value != null ? new HashSet<>((Set<String>) value) : defValues;
+    }
+
+    @Override
+    public int getInt(String key, int defValue) {
+        Object value = get(key);
+        return value != null ? (Integer) value : defValue;
+    }
+
+    @Override
+    public long getLong(String key, long defValue) {
+        Object value = get(key);
+        return value != null ? (Long) value : defValue;
+    }
+
+    @Override
+    public float getFloat(String key, float defValue) {
+        Object value = get(key);
+        return value != null ? (Float) value : defValue;
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defValue) {
+        Object value = get(key);
+        return value != null ? (Boolean) value : defValue;
+    }
+
+    @Override
+    public synchronized boolean contains(String key) {
+        awaitLoaded();
+        return entries.containsKey(key);
+    }
+
+    @Override
+    public Editor edit() {
+        return new StoreEditor();
+    }
+
+    @Override
+    public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Apply an editor's changes in memory and return the changed keys.
+     */
+    private synchronized List<String> merge(boolean clear, Map<String, Object> changes) {
+        awaitLoaded();
+        if (clear) {
+            entries.clear();
+        }
+        List<String> changed = new ArrayList<>(changes.keySet());
+        for (Map.Entry<String, Object> change : changes.entrySet()) {
+            if (change.getValue() == null) {
+                entries.remove(change.getKey());
+            } else {
+                entries.put(change.getKey(), change.getValue());
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Write the current entries, returning false if the file could not be replaced. Runs on
+     * the IO thread only.
+     */
+    private boolean writeToFile() {
+        byte[] bytes;
+        synchronized (this) {
+            writeQueued = false;
+            try {
+                bytes = ProgressSnapshot.encode(entries);
+            } catch (IOException e) {
+                Log.w(TAG, "writeToFile: ", e);
+                return false;
+            }
+        }
+        FileOutputStream stream = null;
+        try {
+            stream = file.startWrite();
+            stream.write(bytes);
+            file.finishWrite(stream);
+            return true;
+        } catch (IOException e) {
+            Log.w(TAG, "writeToFile: " + file.getBaseFile(), e);
+            if (stream != null) {
+                file.failWrite(stream);
+            }
+            return false;
+        }
+    }
+
+    private void notifyListeners(List<String> changed) {
+        if (listeners.isEmpty() || changed.isEmpty()) {
+            return;
+        }
+        mainHandler.post(() -> {
+            for (OnSharedPreferenceChangeListener listener : listeners) {
+                for (String key : changed) {
+                    listener.onSharedPreferenceChanged(this, key);
+                }
+            }
+        });
+    }
+
+    private class StoreEditor implements Editor {
+        // A null value removes the key
+        private final Map<String, Object> changes = new HashMap<>();
+        private boolean clear;
+
+        @Override
+        public Editor putString(String key, String value) {
+            changes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putStringSet(String key, Set<String> values) {
+            changes.put(key, values == null ? null : new HashSet<>(values));
+            return this;
+        }
+
+        @Override
+        public Editor putInt(String key, int value) {
+            changes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putLong(String key, long value) {
+            changes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putFloat(String key, float value) {
+            changes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putBoolean(String key, boolean value) {
+            changes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor remove(String key) {
+            changes.put(key, null);
+            return this;
+        }
+
+        @Override
+        public Editor clear() {
+            clear = true;
+            return this;
+        }
+
+        @Override
+        public boolean commit() {
+            notifyListeners(merge(clear, changes));
+            // Never call this on the IO thread, it would wait for itself
+            try {
+                return IO.submit(ProfileStore.this::writeToFile).get();
+            } catch (ExecutionException e) {
+                Log.w(TAG, "commit: " + file.getBaseFile(), e);
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        @Override
+        public void apply() {
+            notifyListeners(merge(clear, changes));
+            // Several applies before the write runs share one write of the latest entries
+            synchronized (ProfileStore.this) {
+                if (writeQueued) {
+                    return;
+                }
+                writeQueued = true;
+            }
+            IO.execute(ProfileStore.this::writeToFile);
+        }
+    }
+}
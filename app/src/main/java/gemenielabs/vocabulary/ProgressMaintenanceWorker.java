@@ -0,0 +1,205 @@
+package gemenielabs.vocabulary;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.res.Resources;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import builder.gemenielabs.vocabulary.R;
+
+/**
+ * Periodic background job that compacts the progress preferences, refreshes the local
+ * snapshot and rebuilds the widget's {@link ProgressSummary}. Keys that no list/level can
+ * produce any more are dropped, as are keys holding their default value (0 answers, 0 best
+ * counts, reset flags that were already consumed), so cold starts parse less. If the
+ * preferences hold no progress while a snapshot does, the snapshot is restored instead, and
+ * preferences without progress are never snapshotted. The quiz screen makes the same check
+ * when it opens a profile, before it writes anything.
+ *
+ * The job is scheduled twice, once requiring an idle device and once requiring a charger,
+ * since WorkManager constraints can only be combined with AND. Whichever runs first does
+ * the work and the other skips until the interval has passed.
+ *
+ * Only the active profile is maintained, so other profiles' files are never opened here;
+ * a profile is compacted and snapshotted while it is the one in use.
+ */
+public class ProgressMaintenanceWorker extends Worker {
+
+    private static final String TAG = "trouble";
+    private static final String WORK_IDLE = "progress_maintenance_idle";
+    private static final String WORK_CHARGING = "progress_maintenance_charging";
+    private static final String STATE_PREFS = "progress_maintenance";
+    private static final String LAST_RUN = "last_run";
+    private static final long INTERVAL_HOURS = 24;
+    private static final long MIN_GAP_MILLIS = TimeUnit.HOURS.toMillis(INTERVAL_HOURS - 4);
+
+    private static volatile boolean quizInForeground;
+
+    public ProgressMaintenanceWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Called by the quiz screen as it comes and goes so the job never runs alongside it.
+     */
+    public static void setQuizInForeground(boolean inForeground) {
+        quizInForeground = inForeground;
+    }
+
+    public static void schedule(Context context) {
+        Constraints idle = new Constraints.Builder()
+                .setRequiresDeviceIdle(true)
+                .build();
+        Constraints charging = new Constraints.Builder()
+                .setRequiresCharging(true)
+                .build();
+        WorkManager workManager = WorkManager.getInstance(context);
+        workManager.enqueueUniquePeriodicWork(WORK_IDLE, ExistingPeriodicWorkPolicy.KEEP,
+                new PeriodicWorkRequest.Builder(ProgressMaintenanceWorker.class, INTERVAL_HOURS, TimeUnit.HOURS)
+                        .setConstraints(idle)
+                        .build());
+        workManager.enqueueUniquePeriodicWork(WORK_CHARGING, ExistingPeriodicWorkPolicy.KEEP,
+                new PeriodicWorkRequest.Builder(ProgressMaintenanceWorker.class, INTERVAL_HOURS, TimeUnit.HOURS)
+                        .setConstraints(charging)
+                        .build());
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        SharedPreferences state = context.getSharedPreferences(STATE_PREFS, Context.MODE_PRIVATE);
+        long now = System.currentTimeMillis();
+        if (now - state.getLong(LAST_RUN, 0) < MIN_GAP_MILLIS) {
+            return Result.success();
+        }
+        if (quizInForeground) {
+            Log.i(TAG, "doWork: quiz in foreground, retrying later");
+            return Result.retry();
+        }
+
+        long start = SystemClock.elapsedRealtime();
+        String profile = new ProfileManager(context).activeId();
+        SharedPreferences sharedPreferences = ProfileManager.open(context, profile);
+
+        if (!ProgressSnapshot.hasProgress(sharedPreferences.getAll())) {
+            // Nothing to compact, and a snapshot of it would only replace one that has progress
+            if (ProgressSnapshot.exists(context, profile)) {
+                Log.i(TAG, "doWork: restored snapshot " + ProgressSnapshot.restoreIfLost(context, profile, sharedPreferences));
+            }
+        } else {
+            int removed = compact(context, sharedPreferences);
+            if (removed < 0) {
+                Log.i(TAG, "doWork: quiz came to the foreground, retrying later");
+                return Result.retry();
+            }
+            try {
+                ProgressSnapshot.write(context, profile, sharedPreferences);
+            } catch (IOException e) {
+                Log.w(TAG, "doWork: snapshot failed", e);
+                return Result.retry();
+            }
+            Log.i(TAG, "doWork: removed " + removed + " keys");
+        }
+
+        // Rebuild the widget summary so it cannot drift from the compacted or restored store
+        try {
+            ProgressSummary.write(context, profile, ProgressSummary.rebuild(context, sharedPreferences).toBytes());
+            ProgressWidgetProvider.refresh(context);
+        } catch (IOException e) {
+            Log.w(TAG, "doWork: progress summary failed", e);
+        }
+
+        state.edit().putLong(LAST_RUN, now).apply();
+        Log.i(TAG, "doWork: maintenance took " + (SystemClock.elapsedRealtime() - start) + " ms");
+        return Result.success();
+    }
+
+    /**
+     * Remove orphaned and default-valued keys. Returns the number removed, or -1 if the quiz
+     * came to the foreground before anything was written.
+     */
+    static int compact(Context context, SharedPreferences sharedPreferences) {
+        Set<String> validKeys = validKeys(context);
+        SharedPreferences.Editor editor = sharedPreferences.edit();
+        int removed = 0;
+        for (Map.Entry<String, ?> entry : sharedPreferences.getAll().entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            // buildList falls back to the previous list's hint/wrong counts, so their zeros stay
+            boolean keepsZero = key.startsWith(MainActivity.HINT) || key.startsWith(MainActivity.WRONG);
+            boolean isDefault = !keepsZero && (Integer.valueOf(0).equals(value) || Boolean.FALSE.equals(value));
+            if (!validKeys.contains(key) || isDefault) {
+                editor.remove(key);
+                removed++;
+            }
+        }
+        if (quizInForeground) {
+            return -1;
+        }
+        if (removed > 0) {
+            editor.commit();
+        }
+        return removed;
+    }
+
+    /**
+     * Every key the quiz screen can currently read or write, for built in and imported lists.
+     */
+    static Set<String> validKeys(Context context) {
+        Resources resources = context.getResources();
+        Set<String> keys = new HashSet<>();
+        keys.add("PURCHASE_TOKEN");
+        keys.add(MainActivity.WORKING_LIST);
+        keys.add(MainActivity.PROGRESSBAR_SIZE);
+        keys.add(MainActivity.ALLTIMEHINT);
+        keys.add(MainActivity.ALLTIMEWRONG);
+
+        String[] workingListArray = resources.getStringArray(R.array.working_list_array);
+        String[] subListArray = resources.getStringArray(R.array.sub_list_array);
+        for (String list : workingListArray) {
+            for (String level : subListArray) {
+                int address = MainActivity.findListAddress(resources, list, level);
+                int size = address < MainActivity.workingListAddress.length
+                        ? resources.getStringArray(MainActivity.workingListAddress[address]).length
+                        : 0;
+                addLevelKeys(keys, list + level, size);
+            }
+        }
+
+        Map<String, int[]> customListSizes = CustomListStore.getInstance(context).listSizes(subListArray);
+        for (Map.Entry<String, int[]> customList : customListSizes.entrySet()) {
+            for (int j = 0; j < subListArray.length; j++) {
+                addLevelKeys(keys, customList.getKey() + subListArray[j], customList.getValue()[j]);
+            }
+        }
+        return keys;
+    }
+
+    private static void addLevelKeys(Set<String> keys, String prefix, int size) {
+        keys.add(MainActivity.HINT + prefix);
+        keys.add(MainActivity.WRONG + prefix);
+        keys.add(MainActivity.BESTLISTHINT + prefix);
+        keys.add(MainActivity.BESTLISTWRONG + prefix);
+        keys.add(MainActivity.USER_RESET + prefix);
+        keys.add(SprintLeaderboard.SPRINT_BEST + prefix);
+        for (int i = 0; i < size; i++) {
+            keys.add(prefix + i);
+        }
+    }
+}
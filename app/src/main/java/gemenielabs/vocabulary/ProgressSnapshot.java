@@ -0,0 +1,283 @@
+package gemenielabs.vocabulary;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compressed, checksummed copy of the progress preferences kept in the app's files directory,
+ * so progress can be restored if the preferences file is lost or corrupted. Each profile has
+ * its own snapshot file, and the snapshot it replaced is kept as a previous generation in case
+ * damaged progress was snapshotted before anyone noticed.
+ *
+ * File layout: magic, format version, CRC32 and length of the uncompressed payload, then the
+ * gzipped payload. The payload is the entry count followed by key, type and value per entry;
+ * a string set is its size followed by its strings.
+ */
+public class ProgressSnapshot {
+
+    private static final String TAG = "trouble";
+    private static final String FILE_NAME = "progress_snapshot.gz";
+    private static final String PREVIOUS_FILE_NAME = "progress_snapshot.1.gz";
+    private static final int MAGIC = 0x564f4342;
+    private static final int VERSION = 1;
+
+    // Deflate cannot compress better than about 1032 to 1, so a larger stored length is corrupt
+    private static final int MAX_COMPRESSION_RATIO = 1032;
+
+    private static final byte TYPE_INT = 0;
+    private static final byte TYPE_BOOLEAN = 1;
+    private static final byte TYPE_STRING = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_FLOAT = 4;
+    private static final byte TYPE_STRING_SET = 5;
+
+    private ProgressSnapshot() {
+    }
+
+    private static AtomicFile file(Context context, String profile, String name) {
+        return new AtomicFile(new File(context.getFilesDir(), ProfileManager.fileName(profile, name)));
+    }
+
+    public static boolean exists(Context context, String profile) {
+        return file(context, profile, FILE_NAME).getBaseFile().exists()
+                || file(context, profile, PREVIOUS_FILE_NAME).getBaseFile().exists();
+    }
+
+    /**
+     * Whether the entries hold any progress, as opposed to only the screen state the quiz
+     * writes every time it stops.
+     */
+    public static boolean hasProgress(Map<String, ?> entries) {
+        for (String key : entries.keySet()) {
+            if (!key.equals("PURCHASE_TOKEN") && !key.equals(MainActivity.WORKING_LIST)
+                    && !key.equals(MainActivity.PROGRESSBAR_SIZE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Write every entry of the preferences into the snapshot, replacing the previous one atomically.
+     */
+    public static void write(Context context, String profile, SharedPreferences sharedPreferences) throws IOException {
+        Map<String, ?> entries = sharedPreferences.getAll();
+        byte[] bytes = encode(entries);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+
+        AtomicFile atomicFile = file(context, profile, FILE_NAME);
+        keepPrevious(atomicFile, file(context, profile, PREVIOUS_FILE_NAME));
+        FileOutputStream stream = atomicFile.startWrite();
+        try {
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(crc.getValue());
+            out.writeInt(bytes.length);
+            GZIPOutputStream gzip = new GZIPOutputStream(out);
+            gzip.write(bytes);
+            gzip.finish();
+            out.flush();
+            atomicFile.finishWrite(stream);
+        } catch (IOException e) {
+            atomicFile.failWrite(stream);
+            throw e;
+        }
+        Log.i(TAG, "write: snapshot of " + entries.size() + " entries, " + bytes.length + " bytes");
+    }
+
+    private static void keepPrevious(AtomicFile current, AtomicFile previous) throws IOException {
+        byte[] bytes;
+        try {
+            bytes = current.readFully();
+        } catch (FileNotFoundException e) {
+            return;
+        }
+        FileOutputStream stream = previous.startWrite();
+        try {
+            stream.write(bytes);
+            previous.finishWrite(stream);
+        } catch (IOException e) {
+            previous.failWrite(stream);
+            throw e;
+        }
+    }
+
+    /**
+     * The entry count followed by key, type and value per entry.
+     */
+    static byte[] encode(Map<String, ?> entries) throws IOException {
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(payloadBytes);
+        payload.writeInt(entries.size());
+        for (Map.Entry<String, ?> entry : entries.entrySet()) {
+            Object value = entry.getValue();
+            payload.writeUTF(entry.getKey());
+            if (value instanceof Integer) {
+                payload.writeByte(TYPE_INT);
+                payload.writeInt((Integer) value);
+            } else if (value instanceof Boolean) {
+                payload.writeByte(TYPE_BOOLEAN);
+                payload.writeBoolean((Boolean) value);
+            } else if (value instanceof Long) {
+                payload.writeByte(TYPE_LONG);
+                payload.writeLong((Long) value);
+            } else if (value instanceof Float) {
+                payload.writeByte(TYPE_FLOAT);
+                payload.writeFloat((Float) value);
+            } else if (value instanceof Set) {
+                payload.writeByte(TYPE_STRING_SET);
+                payload.writeInt(((Set<?>) value).size());
+                for (Object element : (Set<?>) value) {
+                    payload.writeUTF(String.valueOf(element));
+                }
+            } else {
+                payload.writeByte(TYPE_STRING);
+                payload.writeUTF(String.valueOf(value));
+            }
+        }
+        payload.flush();
+        return payloadBytes.toByteArray();
+    }
+
+    /**
+     * Read entries written by {@link #encode(Map)}.
+     */
+    static Map<String, Object> decode(byte[] bytes) throws IOException {
+        DataInputStream payload = new DataInputStream(new ByteArrayInputStream(bytes));
+        int count = payload.readInt();
+        Map<String, Object> entries = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            String key = payload.readUTF();
+            byte type = payload.readByte();
+            if (type == TYPE_INT) {
+                entries.put(key, payload.readInt());
+            } else if (type == TYPE_BOOLEAN) {
+                entries.put(key, payload.readBoolean());
+            } else if (type == TYPE_LONG) {
+                entries.put(key, payload.readLong());
+            } else if (type == TYPE_FLOAT) {
+                entries.put(key, payload.readFloat());
+            } else if (type == TYPE_STRING_SET) {
+                int size = payload.readInt();
+                if (size < 0 || size > bytes.length) {
+                    throw new IOException("Corrupt set size " + size);
+                }
+                Set<String> values = new HashSet<>();
+                for (int j = 0; j < size; j++) {
+                    values.add(payload.readUTF());
+                }
+                entries.put(key, values);
+            } else {
+                entries.put(key, payload.readUTF());
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Restore the newest snapshot generation holding progress if the preferences hold none,
+     * as when their file was lost or emptied. Call it before anything writes to them, since
+     * the quiz's own screen state does not count as progress. Returns true if restored.
+     */
+    public static boolean restoreIfLost(Context context, String profile, SharedPreferences sharedPreferences) {
+        return !hasProgress(sharedPreferences.getAll()) && restore(context, profile, sharedPreferences);
+    }
+
+    /**
+     * Replace the contents of the preferences with the newest snapshot generation that reads
+     * back intact and holds progress. Returns false, leaving the preferences untouched, if
+     * there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public static boolean restore(Context context, String profile, SharedPreferences sharedPreferences) {
+        Map<String, Object> entries = read(file(context, profile, FILE_NAME));
+        if (entries == null || !hasProgress(entries)) {
+            entries = read(file(context, profile, PREVIOUS_FILE_NAME));
+        }
+        if (entries == null || !hasProgress(entries)) {
+            return false;
+        }
+        SharedPreferences.Editor editor = sharedPreferences.edit().clear();
+        for (Map.Entry<String, Object> entry : entries.entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof Integer) {
+                editor.putInt(entry.getKey(), (Integer) value);
+            } else if (value instanceof Boolean) {
+                editor.putBoolean(entry.getKey(), (Boolean) value);
+            } else if (value instanceof Long) {
+                editor.putLong(entry.getKey(), (Long) value);
+            } else if (value instanceof Float) {
+                editor.putFloat(entry.getKey(), (Float) value);
+            } else if (value instanceof Set) {
+                editor.putStringSet(entry.getKey(), (Set<String>) value);
+            } else {
+                editor.putString(entry.getKey(), (String) value);
+            }
+        }
+        Log.i(TAG, "restore: " + entries.size() + " entries");
+        return editor.commit();
+    }
+
+    /**
+     * Read one snapshot file, or return null if it is missing or fails its checks.
+     */
+    private static Map<String, Object> read(AtomicFile atomicFile) {
+        byte[] bytes;
+        long expectedCrc;
+        try (FileInputStream stream = atomicFile.openRead()) {
+            DataInputStream in = new DataInputStream(stream);
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                Log.w(TAG, "read: unknown snapshot format");
+                return null;
+            }
+            expectedCrc = in.readLong();
+            int length = in.readInt();
+            if (length < 0 || length > atomicFile.getBaseFile().length() * MAX_COMPRESSION_RATIO) {
+                Log.w(TAG, "read: corrupt snapshot length " + length);
+                return null;
+            }
+            bytes = new byte[length];
+            new DataInputStream(new GZIPInputStream(in)).readFully(bytes);
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Log.w(TAG, "read: unreadable snapshot", e);
+            return null;
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        if (crc.getValue() != expectedCrc) {
+            Log.w(TAG, "read: snapshot checksum mismatch");
+            return null;
+        }
+
+        try {
+            return decode(bytes);
+        } catch (IOException e) {
+            Log.w(TAG, "read: malformed snapshot payload", e);
+            return null;
+        }
+    }
+}
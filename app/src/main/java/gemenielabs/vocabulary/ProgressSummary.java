@@ -0,0 +1,197 @@
+package gemenielabs.vocabulary;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.res.Resources;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import builder.gemenielabs.vocabulary.R;
+
+/**
+ * Per-list, per-level answered totals in a small file next to the progress preferences, so the
+ * home screen widget can show completion with one read instead of scanning every answer key.
+ *
+ * The quiz screen updates a level's totals whenever it saves that level's session, and the
+ * maintenance worker rebuilds the whole file from the preferences to keep the two in step.
+ */
+public class ProgressSummary {
+
+    private static final String TAG = "trouble";
+    private static final String FILE_NAME = "progress_summary.bin";
+    private static final int MAGIC = 0x56535531;
+
+    // List name to {total, max} pairs, one pair per level
+    private final Map<String, int[]> lists = new LinkedHashMap<>();
+
+    private static AtomicFile file(Context context, String profile) {
+        return new AtomicFile(new File(context.getFilesDir(), ProfileManager.fileName(profile, FILE_NAME)));
+    }
+
+    /**
+     * Read a profile's summary file, or return null if it is missing or unreadable. Callers
+     * rebuild an unreadable summary, which replaces the damaged file.
+     */
+    public static ProgressSummary read(Context context, String profile) {
+        try {
+            return fromBytes(file(context, profile).readFully());
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "read: unreadable progress summary", e);
+            return null;
+        }
+    }
+
+    static ProgressSummary fromBytes(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a progress summary");
+        }
+        ProgressSummary summary = new ProgressSummary();
+        // Counts are written unsigned, and each list takes at least its name length and level count
+        int listCount = in.readUnsignedShort();
+        if (listCount * 3 > in.available()) {
+            throw new IOException("Corrupt list count " + listCount);
+        }
+        for (int i = 0; i < listCount; i++) {
+            String name = in.readUTF();
+            int levelCount = in.readUnsignedByte();
+            if (levelCount * 8 > in.available()) {
+                throw new IOException("Corrupt level count " + levelCount + " for " + name);
+            }
+            int[] levels = new int[levelCount * 2];
+            for (int j = 0; j < levels.length; j++) {
+                levels[j] = in.readInt();
+            }
+            summary.lists.put(name, levels);
+        }
+        return summary;
+    }
+
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(MAGIC);
+            out.writeShort(lists.size());
+            for (Map.Entry<String, int[]> list : lists.entrySet()) {
+                out.writeUTF(list.getKey());
+                out.writeByte(list.getValue().length / 2);
+                for (int value : list.getValue()) {
+                    out.writeInt(value);
+                }
+            }
+        } catch (IOException e) {
+            // Writing to memory does not fail
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Atomically replace the summary file with the given bytes from {@link #toBytes()}.
+     */
+    public static void write(Context context, String profile, byte[] bytes) throws IOException {
+        AtomicFile atomicFile = file(context, profile);
+        FileOutputStream stream = atomicFile.startWrite();
+        try {
+            stream.write(bytes);
+            atomicFile.finishWrite(stream);
+        } catch (IOException e) {
+            atomicFile.failWrite(stream);
+            throw e;
+        }
+    }
+
+    /**
+     * Set the answered total and maximum of one level of a list.
+     */
+    public void update(String list, int level, int levelCount, int total, int max) {
+        int[] levels = lists.get(list);
+        if (levels == null || levels.length != levelCount * 2) {
+            levels = new int[levelCount * 2];
+            lists.put(list, levels);
+        }
+        levels[level * 2] = total;
+        levels[level * 2 + 1] = max;
+    }
+
+    public Iterable<String> listNames() {
+        return lists.keySet();
+    }
+
+    /**
+     * Answered total over every level of the list.
+     */
+    public int total(String list) {
+        int[] levels = lists.get(list);
+        int total = 0;
+        for (int i = 0; levels != null && i < levels.length; i += 2) {
+            total += levels[i];
+        }
+        return total;
+    }
+
+    /**
+     * Percentage of the list answered, counting only levels whose size is known.
+     */
+    public int percentComplete(String list) {
+        int[] levels = lists.get(list);
+        int total = 0;
+        int max = 0;
+        for (int i = 0; levels != null && i < levels.length; i += 2) {
+            total += levels[i];
+            max += levels[i + 1];
+        }
+        return max == 0 ? 0 : total * 100 / max;
+    }
+
+    /**
+     * Build the summary from scratch by reading every answer key. Only for the background
+     * worker and first start, never per widget refresh.
+     */
+    public static ProgressSummary rebuild(Context context, SharedPreferences sharedPreferences) {
+        Resources resources = context.getResources();
+        String[] workingListArray = resources.getStringArray(R.array.working_list_array);
+        String[] subListArray = resources.getStringArray(R.array.sub_list_array);
+        ProgressSummary summary = new ProgressSummary();
+
+        for (String list : workingListArray) {
+            for (int j = 0; j < subListArray.length; j++) {
+                int address = MainActivity.findListAddress(resources, list, subListArray[j]);
+                int size = address < MainActivity.workingListAddress.length
+                        ? resources.getStringArray(MainActivity.workingListAddress[address]).length
+                        : 0;
+                summary.rebuildLevel(sharedPreferences, list, subListArray, j, size);
+            }
+        }
+
+        Map<String, int[]> customListSizes = CustomListStore.getInstance(context).listSizes(subListArray);
+        for (Map.Entry<String, int[]> customList : customListSizes.entrySet()) {
+            for (int j = 0; j < subListArray.length; j++) {
+                summary.rebuildLevel(sharedPreferences, customList.getKey(), subListArray, j, customList.getValue()[j]);
+            }
+        }
+        return summary;
+    }
+
+    private void rebuildLevel(SharedPreferences sharedPreferences, String list, String[] levels, int level, int size) {
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            total += sharedPreferences.getInt(list + levels[level] + i, 0);
+        }
+        update(list, level, levels.length, total, size * QuizSession.MASTERED);
+    }
+}
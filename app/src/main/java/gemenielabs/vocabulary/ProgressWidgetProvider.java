@@ -0,0 +1,60 @@
+package gemenielabs.vocabulary;
+
+import android.app.PendingIntent;
+import android.appwidget.AppWidgetManager;
+import android.appwidget.AppWidgetProvider;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.widget.RemoteViews;
+
+import builder.gemenielabs.vocabulary.R;
+
+/**
+ * Home screen widget showing how much of each list the active profile has answered. It only
+ * reads the {@link ProgressSummary} file, never the progress preferences.
+ */
+public class ProgressWidgetProvider extends AppWidgetProvider {
+
+    @Override
+    public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
+        RemoteViews views = buildViews(context);
+        for (int appWidgetId : appWidgetIds) {
+            appWidgetManager.updateAppWidget(appWidgetId, views);
+        }
+    }
+
+    /**
+     * Push the current summary to every placed widget, called after the summary file changes.
+     */
+    public static void refresh(Context context) {
+        AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
+        int[] appWidgetIds = appWidgetManager.getAppWidgetIds(new ComponentName(context, ProgressWidgetProvider.class));
+        if (appWidgetIds.length > 0) {
+            appWidgetManager.updateAppWidget(appWidgetIds, buildViews(context));
+        }
+    }
+
+    private static RemoteViews buildViews(Context context) {
+        RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.progress_widget);
+        ProgressSummary summary = ProgressSummary.read(context, new ProfileManager(context).activeId());
+
+        StringBuilder text = new StringBuilder();
+        if (summary == null) {
+            text.append(context.getString(R.string.widget_no_progress));
+        } else {
+            for (String list : summary.listNames()) {
+                if (text.length() > 0) {
+                    text.append('\n');
+                }
+                text.append(list).append("  ").append(summary.percentComplete(list)).append('%');
+            }
+        }
+        views.setTextViewText(R.id.widget_progress, text);
+
+        Intent intent = new Intent(context, MainActivity.class);
+        views.setOnClickPendingIntent(R.id.widget_root,
+                PendingIntent.getActivity(context, 0, intent, PendingIntent.FLAG_IMMUTABLE));
+        return views;
+    }
+}
@@ -0,0 +1,127 @@
+package gemenielabs.vocabulary;
+
+import builder.gemenielabs.vocabulary.BuildConfig;
+
+/**
+ * Mastery state of the list/level being quizzed, sized exactly to the active word list.
+ * Each word moves from 0 (unseen) to 1 (definition right) or 2 (fill in the blank right)
+ * and ends at 3 once both question types were answered. The running total backs the
+ * progress bar so it no longer needs a pass over every word.
+ */
+public class QuizSession {
+
+    public static final int UNSEEN = 0;
+    public static final int MASTERED = 3;
+
+    private final int[] answered;
+    private int total;
+    private int masteredCount;
+
+    /**
+     * Wrap the answered values of a list. The array is shared, not copied, so the cached
+     * entry it came from always reflects the current session. Stored values outside 0..3,
+     * say from a damaged preferences file, are set back to unseen.
+     */
+    public QuizSession(int[] answered) {
+        this.answered = answered;
+        for (int i = 0; i < answered.length; i++) {
+            if (answered[i] < UNSEEN || answered[i] > MASTERED) {
+                answered[i] = UNSEEN;
+            }
+            total += answered[i];
+            if (answered[i] == MASTERED) {
+                masteredCount++;
+            }
+        }
+        checkInvariants();
+    }
+
+    public int size() {
+        return answered.length;
+    }
+
+    public int get(int index) {
+        return answered[index];
+    }
+
+    public void set(int index, int value) {
+        value = checkValue(value);
+        int old = answered[index];
+        answered[index] = value;
+        total += value - old;
+        if (old == MASTERED) {
+            masteredCount--;
+        }
+        if (value == MASTERED) {
+            masteredCount++;
+        }
+        checkInvariants();
+    }
+
+    /**
+     * Sum of all answered values, what the progress bar shows.
+     */
+    public int total() {
+        return total;
+    }
+
+    /**
+     * Value of total() once every word is mastered.
+     */
+    public int max() {
+        return answered.length * MASTERED;
+    }
+
+    public boolean isComplete() {
+        return masteredCount == answered.length;
+    }
+
+    /**
+     * Set every word back to unseen.
+     */
+    public void reset() {
+        for (int i = 0; i < answered.length; i++) {
+            answered[i] = UNSEEN;
+        }
+        total = 0;
+        masteredCount = 0;
+        checkInvariants();
+    }
+
+    /**
+     * Reject a value outside 0..3 in debug builds, and clamp it into range in release builds.
+     */
+    private static int checkValue(int value) {
+        if (value >= UNSEEN && value <= MASTERED) {
+            return value;
+        }
+        if (BuildConfig.DEBUG) {
+            throw new IllegalArgumentException("Answered value out of range: " + value);
+        }
+        return Math.max(UNSEEN, Math.min(MASTERED, value));
+    }
+
+    /**
+     * Recount the whole list in debug builds to catch the running totals drifting.
+     */
+    private void checkInvariants() {
+        if (!BuildConfig.DEBUG) {
+            return;
+        }
+        int sum = 0;
+        int mastered = 0;
+        for (int value : answered) {
+            if (value < UNSEEN || value > MASTERED) {
+                throw new IllegalStateException("Answered value out of range: " + value);
+            }
+            sum += value;
+            if (value == MASTERED) {
+                mastered++;
+            }
+        }
+        if (sum != total || mastered != masteredCount) {
+            throw new IllegalStateException("Session totals out of sync: " + total + "/" + sum
+                    + " mastered " + masteredCount + "/" + mastered);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package gemenielabs.vocabulary;
+
+import android.content.SharedPreferences;
+
+import java.util.Arrays;
+
+/**
+ * Best sprint scores per list and level, highest first, kept in the progress preferences as a
+ * comma separated string.
+ */
+public class SprintLeaderboard {
+
+    public static final String SPRINT_BEST = "sprint_best";
+    private static final int SIZE = 5;
+
+    private final SharedPreferences sharedPreferences;
+
+    public SprintLeaderboard(SharedPreferences sharedPreferences) {
+        this.sharedPreferences = sharedPreferences;
+    }
+
+    public int[] best(String list, String level) {
+        String stored = sharedPreferences.getString(SPRINT_BEST + list + level, "");
+        if (stored.isEmpty()) {
+            return new int[0];
+        }
+        String[] parts = stored.split(",");
+        int[] scores = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            scores[i] = Integer.parseInt(parts[i]);
+        }
+        return scores;
+    }
+
+    /**
+     * Add a score and return its place on the board, 1 for a new best, or 0 if it did not make it.
+     */
+    public int record(String list, String level, int score) {
+        int[] scores = best(list, level);
+        int place = scores.length;
+        while (place > 0 && scores[place - 1] < score) {
+            place--;
+        }
+        if (place >= SIZE) {
+            return 0;
+        }
+
+        int[] updated = new int[Math.min(scores.length + 1, SIZE)];
+        System.arraycopy(scores, 0, updated, 0, place);
+        updated[place] = score;
+        System.arraycopy(scores, place, updated, place + 1, updated.length - place - 1);
+
+        StringBuilder stored = new StringBuilder();
+        for (int value : updated) {
+            if (stored.length() > 0) {
+                stored.append(',');
+            }
+            stored.append(value);
+        }
+        sharedPreferences.edit().putString(SPRINT_BEST + list + level, stored.toString()).apply();
+        return place + 1;
+    }
+
+    public static String format(int[] scores) {
+        return Arrays.toString(scores).replace("[", "").replace("]", "");
+    }
+}
@@ -0,0 +1,150 @@
+package gemenielabs.vocabulary;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One timed sprint over a word list: as many definition questions as possible before the
+ * clock runs out. The next questions, options included, are built ahead of time so an answer
+ * only has to show what is already prepared. Timestamps are monotonic nanoseconds, such as
+ * SystemClock.elapsedRealtimeNanos(), and are passed in so the class has no Android dependencies.
+ */
+public class SprintSession {
+
+    public static final long DURATION_NANOS = TimeUnit.SECONDS.toNanos(60);
+    private static final int PREFETCH = 3;
+    private static final int OPTIONS = 4;
+
+    public static class Question {
+        public final int wordIndex;
+        public final String[] options;
+        public final int answerOption;
+
+        Question(int wordIndex, String[] options, int answerOption) {
+            this.wordIndex = wordIndex;
+            this.options = options;
+            this.answerOption = answerOption;
+        }
+    }
+
+    private final String[] words;
+    private final Random random;
+    private final long endNanos;
+    private final ArrayDeque<Question> upcoming = new ArrayDeque<>(PREFETCH + 1);
+    private Question current;
+    private int lastWordIndex = -1;
+    private long shownAtNanos;
+    private int score;
+    private int answered;
+    private long[] latencies = new long[64];
+
+    public SprintSession(String[] words, Random random, long startNanos) {
+        // Options are told apart by text, so repeated words do not count
+        if (new HashSet<>(Arrays.asList(words)).size() < OPTIONS) {
+            throw new IllegalArgumentException("A sprint needs at least " + OPTIONS + " different words");
+        }
+        this.words = words;
+        this.random = random;
+        this.endNanos = startNanos + DURATION_NANOS;
+        prefetch();
+        current = upcoming.poll();
+        prefetch();
+    }
+
+    private void prefetch() {
+        while (upcoming.size() < PREFETCH) {
+            int wordIndex;
+            do {
+                wordIndex = random.nextInt(words.length);
+            } while (wordIndex == lastWordIndex);
+            lastWordIndex = wordIndex;
+
+            String[] options = new String[OPTIONS];
+            int answerOption = random.nextInt(OPTIONS);
+            options[answerOption] = words[wordIndex];
+            for (int i = 0; i < OPTIONS; i++) {
+                while (options[i] == null) {
+                    String candidate = words[random.nextInt(words.length)];
+                    if (!contains(options, candidate)) {
+                        options[i] = candidate;
+                    }
+                }
+            }
+            upcoming.add(new Question(wordIndex, options, answerOption));
+        }
+    }
+
+    private static boolean contains(String[] options, String word) {
+        for (String option : options) {
+            if (word.equals(option)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Question current() {
+        return current;
+    }
+
+    /**
+     * Mark the moment the current question became visible; its latency is measured from here.
+     */
+    public void shown(long nowNanos) {
+        shownAtNanos = nowNanos;
+    }
+
+    /**
+     * Record the answer to the current question and move to the next prefetched one.
+     */
+    public boolean answer(int option, long nowNanos) {
+        boolean correct = option == current.answerOption;
+        if (correct) {
+            score++;
+        }
+        if (answered == latencies.length) {
+            long[] grown = new long[latencies.length * 2];
+            System.arraycopy(latencies, 0, grown, 0, latencies.length);
+            latencies = grown;
+        }
+        latencies[answered++] = nowNanos - shownAtNanos;
+
+        current = upcoming.poll();
+        prefetch();
+        return correct;
+    }
+
+    public boolean isOver(long nowNanos) {
+        return nowNanos >= endNanos;
+    }
+
+    public long remainingNanos(long nowNanos) {
+        return Math.max(0, endNanos - nowNanos);
+    }
+
+    public int score() {
+        return score;
+    }
+
+    public int answered() {
+        return answered;
+    }
+
+    public long latencyNanos(int question) {
+        return latencies[question];
+    }
+
+    public long averageLatencyMillis() {
+        if (answered == 0) {
+            return 0;
+        }
+        long total = 0;
+        for (int i = 0; i < answered; i++) {
+            total += latencies[i];
+        }
+        return TimeUnit.NANOSECONDS.toMillis(total / answered);
+    }
+}
@@ -0,0 +1,115 @@
+package gemenielabs.vocabulary;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * Keeps the decoded word, definition and sentence arrays of recently used lists in memory,
+ * together with their mastery state, so switching back to a list does not re-decode the
+ * resource arrays or reload every answered entry from SharedPreferences.
+ */
+public class WordListCache {
+
+    private static final String TAG = "trouble";
+
+    // Share of the app heap (by memory class) the cache may use.
+    private static final int HEAP_FRACTION = 32;
+
+    /**
+     * One decoded list/level pair.
+     */
+    public static class Entry {
+        public final String[] words;
+        public final String[] definitions;
+        public final String[] sentences;
+        public final int[] answered;
+        // Lists imported before duplicates were merged may repeat a word
+        public final int distinctWords;
+        final int sizeInBytes;
+
+        // Loaded with an imported level, otherwise built in the background once shown; null until then
+        public volatile ConfusableIndex confusables;
+
+        public Entry(String[] words, String[] definitions, String[] sentences, int[] answered) {
+            this.words = words;
+            this.definitions = definitions;
+            this.sentences = sentences;
+            this.answered = answered;
+            this.distinctWords = new HashSet<>(Arrays.asList(words)).size();
+            this.sizeInBytes = measure(words) + measure(definitions) + measure(sentences)
+                    + answered.length * 4;
+        }
+
+        private static int measure(String[] strings) {
+            // Rough footprint: array slot, String header and two bytes per char
+            int size = 16;
+            for (String string : strings) {
+                size += 4 + 24 + string.length() * 2;
+            }
+            return size;
+        }
+    }
+
+    private final LruCache<String, Entry> cache;
+
+    public WordListCache(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int maxBytes = activityManager.getMemoryClass() * 1024 * 1024 / HEAP_FRACTION;
+        cache = new LruCache<String, Entry>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Entry entry) {
+                return entry.sizeInBytes;
+            }
+        };
+    }
+
+    public static String key(String workingList, String subList) {
+        return workingList + subList;
+    }
+
+    public Entry get(String workingList, String subList) {
+        return cache.get(key(workingList, subList));
+    }
+
+    public void put(String workingList, String subList, Entry entry) {
+        cache.put(key(workingList, subList), entry);
+    }
+
+    /**
+     * Drop every list, e.g. after switching to a profile whose answered values differ.
+     */
+    public void clear() {
+        cache.evictAll();
+    }
+
+    public int hitCount() {
+        return cache.hitCount();
+    }
+
+    public int missCount() {
+        return cache.missCount();
+    }
+
+    /**
+     * Shrink or clear the cache in response to {@link ComponentCallbacks2#onTrimMemory(int)}.
+     * UI_HIDDEN and BACKGROUND only mean the user left the app, so the cache is kept for their
+     * return; it is cleared once the process is at risk of being killed.
+     */
+    public void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            cache.evictAll();
+        } else if (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            cache.trimToSize(cache.size() / 2);
+        } else if (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            cache.trimToSize(cache.size() * 3 / 4);
+        }
+        Log.i(TAG, "trimMemory: " + level + " size " + cache.size() + " hits " + hitCount() + " misses " + missCount());
+    }
+}
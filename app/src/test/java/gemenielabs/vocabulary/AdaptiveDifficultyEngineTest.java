@@ -0,0 +1,84 @@
+package gemenielabs.vocabulary;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the adaptive difficulty engine, no device needed.
+ */
+public class AdaptiveDifficultyEngineTest {
+
+    private AdaptiveDifficultyEngine engine;
+
+    @Before
+    public void setUp() {
+        AdaptiveDifficultyEngine.Config config = new AdaptiveDifficultyEngine.Config();
+        config.smoothing = 0.5;
+        config.promoteAccuracy = 0.8;
+        config.demoteAccuracy = 0.4;
+        config.promoteMaxResponseMillis = 5000;
+        config.minAnswers = 3;
+        engine = new AdaptiveDifficultyEngine(5, config);
+    }
+
+    @Test
+    public void movingAverageStartsAtFirstAnswer() {
+        engine.recordAnswer(0, "abjure", false, 4000);
+        assertEquals(0.0, engine.levelAccuracy(0), 1e-9);
+        assertEquals(4000.0, engine.levelResponseMillis(0), 1e-9);
+
+        engine.recordAnswer(0, "abjure", true, 2000);
+        assertEquals(0.5, engine.levelAccuracy(0), 1e-9);
+        assertEquals(3000.0, engine.levelResponseMillis(0), 1e-9);
+        assertEquals(0.5, engine.wordAccuracy("abjure"), 1e-9);
+        assertEquals(2, engine.levelAnswers(0));
+    }
+
+    @Test
+    public void promotesAfterMinimumAnswersWhenAccurateAndFast() {
+        assertEquals(AdaptiveDifficultyEngine.Decision.STAY, engine.recordAnswer(1, "a", true, 1000));
+        assertEquals(AdaptiveDifficultyEngine.Decision.STAY, engine.recordAnswer(1, "b", true, 1000));
+        assertEquals(AdaptiveDifficultyEngine.Decision.PROMOTE, engine.recordAnswer(1, "c", true, 1000));
+        assertEquals(2, AdaptiveDifficultyEngine.targetLevel(1, AdaptiveDifficultyEngine.Decision.PROMOTE));
+    }
+
+    @Test
+    public void slowAnswersDoNotPromote() {
+        engine.recordAnswer(1, "a", true, 9000);
+        engine.recordAnswer(1, "b", true, 9000);
+        assertEquals(AdaptiveDifficultyEngine.Decision.STAY, engine.recordAnswer(1, "c", true, 9000));
+    }
+
+    @Test
+    public void demotesWhenInaccurateButNeverBelowFirstLevel() {
+        engine.recordAnswer(2, "a", false, 1000);
+        engine.recordAnswer(2, "b", false, 1000);
+        assertEquals(AdaptiveDifficultyEngine.Decision.DEMOTE, engine.recordAnswer(2, "c", false, 1000));
+
+        engine.recordAnswer(0, "d", false, 1000);
+        engine.recordAnswer(0, "e", false, 1000);
+        assertEquals(AdaptiveDifficultyEngine.Decision.STAY, engine.recordAnswer(0, "f", false, 1000));
+    }
+
+    @Test
+    public void waitsForMinimumAnswersBetweenDecisions() {
+        engine.recordAnswer(1, "a", true, 1000);
+        engine.recordAnswer(1, "b", true, 1000);
+        assertEquals(AdaptiveDifficultyEngine.Decision.PROMOTE, engine.recordAnswer(1, "c", true, 1000));
+        assertEquals(AdaptiveDifficultyEngine.Decision.STAY, engine.recordAnswer(1, "d", true, 1000));
+        assertEquals(AdaptiveDifficultyEngine.Decision.STAY, engine.recordAnswer(1, "e", true, 1000));
+        assertEquals(AdaptiveDifficultyEngine.Decision.PROMOTE, engine.recordAnswer(1, "f", true, 1000));
+    }
+
+    @Test
+    public void selectsWeakestWordsFirst() {
+        engine.recordAnswer(3, "known", true, 1000);
+        engine.recordAnswer(3, "missed", false, 1000);
+        String[] words = {"known", "fresh", "missed"};
+
+        assertArrayEquals(new int[]{2, 1}, engine.selectWords(words, 2));
+        assertEquals(3, engine.selectWords(words, 10).length);
+    }
+}
@@ -0,0 +1,121 @@
+package gemenielabs.vocabulary;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the confusable words index, using the A BASIC list.
+ */
+public class ConfusableIndexTest {
+
+    private static final String[] WORDS = {
+            "abject", "aberration", "abjure", "abnegate", "abrogate", "abscond", "abstruse", "accede"};
+
+    private static final String[] DEFINITIONS = {
+            "(of something bad) experienced or present to the maximum degree",
+            "a departure from what is normal, usual, or expected, typically one that is unwelcome",
+            "solemnly renounce (a belief, cause, or claim)",
+            "renounce or reject (something desired or valuable)",
+            "repeal or do away with (a law, right, or formal agreement)",
+            "leave hurriedly and secretly, typically to avoid detection of or arrest for an unlawful action",
+            "difficult to understand; obscure",
+            "assent or agree to a demand, request, or treaty"};
+
+    private static final int ABJURE = 2;
+    private static final int ABNEGATE = 3;
+    private static final int ABROGATE = 4;
+    private static final int ABSCOND = 5;
+
+    @Test
+    public void renounceWordsAreNeighbours() {
+        ConfusableIndex index = ConfusableIndex.build(WORDS, DEFINITIONS, 3);
+        assertTrue(contains(index, ABJURE, ABNEGATE));
+        assertTrue(contains(index, ABNEGATE, ABJURE));
+        assertTrue(contains(index, ABNEGATE, ABROGATE));
+        assertEquals(ABROGATE, index.neighbour(ABNEGATE, 0));
+        assertEquals(ABNEGATE, index.neighbour(ABROGATE, 0));
+        assertFalse(contains(index, ABJURE, ABSCOND));
+    }
+
+    @Test
+    public void neighboursAreSortedAndNeverTheWordItself() {
+        ConfusableIndex index = ConfusableIndex.build(WORDS, DEFINITIONS, 3);
+        for (int word = 0; word < WORDS.length; word++) {
+            for (int rank = 0; rank < index.neighbours() && index.neighbour(word, rank) >= 0; rank++) {
+                assertNotEquals(word, index.neighbour(word, rank));
+                if (rank > 0) {
+                    assertTrue(index.score(word, rank) <= index.score(word, rank - 1));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void unrelatedWordsHaveNoNeighbours() {
+        ConfusableIndex index = ConfusableIndex.build(
+                new String[]{"zebra", "quick"}, new String[]{"striped animal", "fast moving"}, 3);
+        assertEquals(-1, index.neighbour(0, 0));
+        assertEquals(-1, index.neighbour(1, 0));
+        assertEquals(-1, index.neighbour(0, 3));
+    }
+
+    @Test
+    public void levelsLargerThanAShortAreFullyIndexed() {
+        int count = Short.MAX_VALUE + 7000;
+        String[] words = new String[count];
+        String[] definitions = new String[count];
+        for (int i = 0; i < count; i++) {
+            // Four letter base 26 words, so every word has close spellings elsewhere in the list
+            words[i] = "" + (char) ('a' + i / 17576 % 26) + (char) ('a' + i / 676 % 26)
+                    + (char) ('a' + i / 26 % 26) + (char) ('a' + i % 26);
+            definitions[i] = "";
+        }
+        ConfusableIndex index = ConfusableIndex.build(words, definitions, 3);
+        int last = count - 1;
+        assertTrue(index.neighbour(last, 0) >= 0);
+        assertNotEquals(last, index.neighbour(last, 0));
+        assertEquals(-1, index.neighbour(count, 0));
+    }
+
+    @Test
+    public void storedRowsDecodeToTheSameIndex() {
+        ConfusableIndex index = ConfusableIndex.build(WORDS, DEFINITIONS, 3);
+        byte[][] rows = new byte[WORDS.length][];
+        for (int word = 0; word < WORDS.length; word++) {
+            rows[word] = index.encode(word);
+        }
+        ConfusableIndex decoded = ConfusableIndex.decode(rows, 3);
+        assertEquals(WORDS.length, decoded.size());
+        for (int word = 0; word < WORDS.length; word++) {
+            for (int rank = 0; rank < 3; rank++) {
+                assertEquals(index.neighbour(word, rank), decoded.neighbour(word, rank));
+                if (index.neighbour(word, rank) >= 0) {
+                    assertEquals(index.score(word, rank), decoded.score(word, rank));
+                }
+            }
+        }
+
+        // A word imported before indexes were stored, or rows of another size, mean no index
+        rows[1] = null;
+        assertNull(ConfusableIndex.decode(rows, 3));
+        rows[1] = new byte[4];
+        assertNull(ConfusableIndex.decode(rows, 3));
+    }
+
+    @Test
+    public void editDistanceCountsSingleCharacterChanges() {
+        assertEquals(0, ConfusableIndex.editDistance("abjure", "abjure"));
+        assertEquals(2, ConfusableIndex.editDistance("abnegate", "abrogate"));
+        assertEquals(3, ConfusableIndex.editDistance("", "abc"));
+    }
+
+    private static boolean contains(ConfusableIndex index, int word, int neighbour) {
+        for (int rank = 0; rank < index.neighbours(); rank++) {
+            if (index.neighbour(word, rank) == neighbour) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,79 @@
+package gemenielabs.vocabulary;
+
+import org.junit.Test;
+
+import builder.gemenielabs.vocabulary.BuildConfig;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the quiz session's running totals.
+ */
+public class QuizSessionTest {
+
+    @Test
+    public void countsStoredValues() {
+        QuizSession session = new QuizSession(new int[]{0, 1, 2, 3, 3});
+        assertEquals(5, session.size());
+        assertEquals(9, session.total());
+        assertEquals(15, session.max());
+        assertFalse(session.isComplete());
+    }
+
+    @Test
+    public void setKeepsTotalsRunning() {
+        int[] answered = new int[4];
+        QuizSession session = new QuizSession(answered);
+        session.set(0, 1);
+        session.set(0, QuizSession.MASTERED);
+        session.set(1, 2);
+        assertEquals(5, session.total());
+        assertEquals(QuizSession.MASTERED, answered[0]);
+
+        session.set(0, 1);
+        assertEquals(3, session.total());
+        assertEquals(1, session.get(0));
+    }
+
+    @Test
+    public void completeOnceEveryWordIsMastered() {
+        QuizSession session = new QuizSession(new int[]{3, 3, 2});
+        assertFalse(session.isComplete());
+        session.set(2, QuizSession.MASTERED);
+        assertTrue(session.isComplete());
+        assertEquals(session.max(), session.total());
+    }
+
+    @Test
+    public void resetSetsEveryWordBackToUnseen() {
+        int[] answered = {3, 1, 2};
+        QuizSession session = new QuizSession(answered);
+        session.reset();
+        assertEquals(0, session.total());
+        assertFalse(session.isComplete());
+        assertArrayEquals(new int[3], answered);
+        session.set(1, 2);
+        assertEquals(2, session.total());
+    }
+
+    @Test
+    public void damagedStoredValuesStartUnseen() {
+        int[] answered = {3, 7, -1, 2};
+        QuizSession session = new QuizSession(answered);
+        assertArrayEquals(new int[]{3, 0, 0, 2}, answered);
+        assertEquals(5, session.total());
+    }
+
+    @Test
+    public void outOfRangeSetThrowsInDebugAndClampsInRelease() {
+        QuizSession session = new QuizSession(new int[2]);
+        try {
+            session.set(0, 5);
+            assertFalse(BuildConfig.DEBUG);
+            assertEquals(QuizSession.MASTERED, session.get(0));
+            assertEquals(3, session.total());
+        } catch (IllegalArgumentException e) {
+            assertTrue(BuildConfig.DEBUG);
+        }
+    }
+}
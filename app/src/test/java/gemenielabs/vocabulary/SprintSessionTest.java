@@ -0,0 +1,69 @@
+package gemenielabs.vocabulary;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for sprint questions, scoring and latency.
+ */
+public class SprintSessionTest {
+
+    private static final String[] WORDS = {"abjure", "abnegate", "abrogate", "abject", "aberration"};
+
+    @Test
+    public void questionsOfferTheAnswerAndThreeOtherWords() {
+        SprintSession sprint = new SprintSession(WORDS, new Random(7), 0);
+        for (int i = 0; i < 50; i++) {
+            SprintSession.Question question = sprint.current();
+            assertEquals(WORDS[question.wordIndex], question.options[question.answerOption]);
+            for (int a = 0; a < question.options.length; a++) {
+                for (int b = a + 1; b < question.options.length; b++) {
+                    assertFalse(question.options[a].equals(question.options[b]));
+                }
+            }
+            sprint.answer(question.answerOption, i);
+            assertNotEquals(question.wordIndex, sprint.current().wordIndex);
+        }
+    }
+
+    @Test
+    public void scoresAndRecordsLatencyFromWhenShown() {
+        SprintSession sprint = new SprintSession(WORDS, new Random(1), 0);
+        sprint.shown(TimeUnit.MILLISECONDS.toNanos(100));
+        int right = sprint.current().answerOption;
+        assertTrue(sprint.answer(right, TimeUnit.MILLISECONDS.toNanos(400)));
+
+        sprint.shown(TimeUnit.MILLISECONDS.toNanos(400));
+        int wrong = (sprint.current().answerOption + 1) % 4;
+        assertFalse(sprint.answer(wrong, TimeUnit.MILLISECONDS.toNanos(500)));
+
+        assertEquals(1, sprint.score());
+        assertEquals(2, sprint.answered());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(300), sprint.latencyNanos(0));
+        assertEquals(200, sprint.averageLatencyMillis());
+    }
+
+    @Test
+    public void endsAfterSixtySeconds() {
+        long start = TimeUnit.SECONDS.toNanos(5);
+        SprintSession sprint = new SprintSession(WORDS, new Random(3), start);
+        assertFalse(sprint.isOver(start + TimeUnit.SECONDS.toNanos(59)));
+        assertEquals(TimeUnit.SECONDS.toNanos(1), sprint.remainingNanos(start + TimeUnit.SECONDS.toNanos(59)));
+        assertTrue(sprint.isOver(start + TimeUnit.SECONDS.toNanos(60)));
+        assertEquals(0, sprint.remainingNanos(start + TimeUnit.SECONDS.toNanos(61)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void needsFourWords() {
+        new SprintSession(new String[]{"a", "b", "c"}, new Random(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void needsFourDifferentWords() {
+        new SprintSession(new String[]{"a", "a", "a", "a", "b"}, new Random(), 0);
+    }
+}